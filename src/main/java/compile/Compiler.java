@@ -6,6 +6,7 @@ import compile.codegen.mirgen.MachineFunction;
 import compile.codegen.regalloc.RegAllocator;
 import compile.llvm.GlobalVariable;
 import compile.llvm.Module;
+import compile.opt.PassManager;
 import compile.sysy.SysYLexer;
 import compile.sysy.SysYParser;
 import execute.Executor;
@@ -40,6 +41,8 @@ public class Compiler {
         Module module = astVisitor.getModule();
         if (options.containsKey("emit-llvm"))
             emitLLVM(options.get("emit-llvm"), module);
+        PassManager passManager = new PassManager(options);
+        passManager.run(module);
         if (options.containsKey("emit-opt-llvm"))
             emitLLVM(options.get("emit-opt-llvm"), module);
         MIRGenerator mirGenerator = new MIRGenerator(module);
@@ -47,6 +50,7 @@ public class Compiler {
         Map<String, MachineFunction> mFuncs = mirGenerator.getFuncs();
         if (options.containsKey("emit-mir"))
             emitMIR(options.get("emit-mir"), mFuncs);
+        passManager.run(mFuncs);
         if (options.containsKey("emit-opt-mir"))
             emitMIR(options.get("emit-opt-mir"), mFuncs);
         RegAllocator regAllocator = new RegAllocator(mFuncs);
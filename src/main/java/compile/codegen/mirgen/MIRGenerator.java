@@ -3,6 +3,7 @@ package compile.codegen.mirgen;
 import compile.codegen.MReg;
 import compile.codegen.VReg;
 import compile.codegen.mirgen.mir.*;
+import compile.codegen.mirgen.trans.MIROpHelper;
 import compile.codegen.mirgen.trans.MIROpTrans;
 import compile.llvm.Module;
 import compile.llvm.*;
@@ -10,6 +11,8 @@ import compile.llvm.contant.ConstantNumber;
 import compile.llvm.ir.*;
 import compile.llvm.type.BasicType;
 import compile.llvm.value.Value;
+import compile.opt.analysis.DominatorTree;
+import compile.opt.analysis.LoopInfo;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.util.*;
@@ -99,38 +102,152 @@ public class MIRGenerator {
                 mFuncs.put(func.getName(), llvm2MirSingle(func));
     }
 
+    private void splitCriticalEdges(Function func) {
+        for (BasicBlock block : new ArrayList<>(getBlocks(func))) {
+            if (!(block.getLast() instanceof BranchInst branchInst) || !branchInst.isConditional())
+                continue;
+            for (BasicBlock succ : block.getSuccessors()) {
+                if (succ.isEmpty() || !(succ.get(0) instanceof PhiInst))
+                    continue;
+                BasicBlock midBlock = new BasicBlock(func);
+                midBlock.add(new BranchInst(midBlock, succ));
+                func.insertAfter(block, midBlock);
+                branchInst.replaceBlock(succ, midBlock);
+                for (Instruction inst : succ) {
+                    if (!(inst instanceof PhiInst phiInst))
+                        break;
+                    phiInst.replaceBlock(block, midBlock);
+                }
+            }
+        }
+    }
+
+    private List<BasicBlock> getBlocks(Function func) {
+        List<BasicBlock> blocks = new ArrayList<>();
+        for (BasicBlock block : func)
+            blocks.add(block);
+        return blocks;
+    }
+
+    private void transPhiCopies(List<MIR> irs, Map<Value, VReg> valueRegMap, BasicBlock block, BasicBlock succ) {
+        List<PhiInst> phiInsts = new ArrayList<>();
+        for (Instruction inst : succ) {
+            if (!(inst instanceof PhiInst phiInst))
+                break;
+            phiInsts.add(phiInst);
+        }
+        if (phiInsts.isEmpty())
+            return;
+        Set<VReg> targets = new HashSet<>();
+        for (PhiInst phiInst : phiInsts)
+            targets.add(valueRegMap.get(phiInst));
+        Map<PhiInst, VReg> sources = new HashMap<>();
+        for (PhiInst phiInst : phiInsts) {
+            Value value = phiInst.getValue(block);
+            if (value instanceof ConstantNumber)
+                continue;
+            VReg source = valueRegMap.get(value);
+            if (targets.contains(source)) {
+                VReg midReg = new VReg(source.getType());
+                irs.add(new RrMIR(RrMIR.Op.MV, midReg, source));
+                source = midReg;
+            }
+            sources.put(phiInst, source);
+        }
+        for (PhiInst phiInst : phiInsts) {
+            VReg target = valueRegMap.get(phiInst);
+            switch (phiInst.getValue(block)) {
+                case ConstantNumber value -> {
+                    if (value.getType() == BasicType.FLOAT)
+                        MIROpHelper.loadImmToReg(irs, target, value.floatValue());
+                    else
+                        MIROpHelper.loadImmToReg(irs, target, value.intValue());
+                }
+                default -> {
+                    if (target != sources.get(phiInst))
+                        irs.add(new RrMIR(RrMIR.Op.MV, target, sources.get(phiInst)));
+                }
+            }
+        }
+    }
+
     private MachineFunction llvm2MirSingle(Function func) {
+        splitCriticalEdges(func);
         Map<Argument, Pair<Boolean, Integer>> argOffsets = calcArgOffsets(func.getArgs());
         Pair<Integer, Map<AllocaInst, Integer>> locals = calcLocalOffsets(func.getFirst());
         Pair<Integer, Integer> callerNums = getCallerNumbers(func);
         MachineFunction mFunc = new MachineFunction(func, locals.getLeft(), callerNums.getLeft(), callerNums.getRight());
         LabelMIR retLabelMIR = new LabelMIR(new BasicBlock(func));
         Map<VReg, MReg> replaceMap = new HashMap<>();
-        Map<Instruction, VReg> instRegMap = new HashMap<>();
+        Map<Value, VReg> valueRegMap = new HashMap<>();
         for (BasicBlock block : func) {
             for (Instruction inst : block) {
-                instRegMap.put(inst, new VReg(inst.getType() == BasicType.FLOAT ? BasicType.FLOAT : BasicType.I32));
+                valueRegMap.put(inst, new VReg(inst.getType() == BasicType.FLOAT ? BasicType.FLOAT : BasicType.I32));
             }
         }
+        for (Argument arg : func.getArgs()) {
+            VReg argReg = new VReg(arg.getType() == BasicType.FLOAT ? BasicType.FLOAT : BasicType.I32);
+            Pair<Boolean, Integer> innerOffset = argOffsets.get(arg);
+            mFunc.getIrs().add(new LoadItemMIR(innerOffset.getLeft() ? LoadItemMIR.Item.PARAM_INNER : LoadItemMIR.Item.PARAM_OUTER, argReg, innerOffset.getRight()));
+            valueRegMap.put(arg, argReg);
+        }
         Map<AllocaInst, Integer> localOffsets = locals.getRight();
+        LoopInfo loopInfo = new LoopInfo(new DominatorTree(func));
+        for (BasicBlock block : func)
+            mFunc.setLoopDepth(block, loopInfo.getLoopDepth(block));
         for (BasicBlock block : func) {
             mFunc.addIR(new LabelMIR(block));
             for (Instruction inst : block) {
+                if (inst instanceof PhiInst) {
+                    continue;
+                }
                 if (inst instanceof BinaryOperator binaryOperator) {
-                    MIROpTrans.transBinary(mFunc.getIrs(), instRegMap, binaryOperator);
+                    MIROpTrans.transBinary(mFunc.getIrs(), valueRegMap, binaryOperator);
+                    continue;
+                }
+                if (inst instanceof SelectInst selectInst) {
+                    MIROpTrans.transSelect(mFunc.getIrs(), valueRegMap, selectInst);
                     continue;
                 }
                 if (inst instanceof BranchInst branchInst) {
-                    MIROpTrans.transBranch(mFunc.getIrs(), instRegMap, branchInst);
+                    for (BasicBlock succ : block.getSuccessors())
+                        transPhiCopies(mFunc.getIrs(), valueRegMap, block, succ);
+                    MIROpTrans.transBranch(mFunc.getIrs(), valueRegMap, branchInst);
                     continue;
                 }
                 if (inst instanceof CallInst callInst) {
-                    int paramNum = MIROpTrans.transCall(mFunc.getIrs(), instRegMap, callInst, localOffsets);
+                    int paramNum = MIROpTrans.transCall(mFunc.getIrs(), valueRegMap, callInst, localOffsets);
                     mFunc.setMaxFuncParamNum(Integer.max(mFunc.getMaxFuncParamNum(), paramNum));
                     continue;
                 }
                 if (inst instanceof GetElementPtrInst getElementPtrInst) {
                     Value pointer = getElementPtrInst.getOperand(0);
+                    if (getElementPtrInst.getLastOperand() instanceof ConstantNumber index && index.getType() != BasicType.FLOAT) {
+                        VReg target = valueRegMap.get(getElementPtrInst);
+                        int offset = index.intValue() * (getElementPtrInst.getType().baseType().getSize() / 8);
+                        if (pointer instanceof AllocaInst allocaInst) {
+                            mFunc.getIrs().add(new AddRegLocalMIR(target, localOffsets.get(allocaInst) + offset));
+                            continue;
+                        }
+                        VReg base = switch (pointer) {
+                            case GlobalVariable global -> {
+                                VReg midReg = new VReg(BasicType.I32);
+                                mFunc.getIrs().add(new LlaMIR(midReg, global));
+                                yield midReg;
+                            }
+                            case Argument arg -> valueRegMap.get(arg);
+                            case Instruction pointerInst -> valueRegMap.get(pointerInst);
+                            default -> throw new IllegalStateException("Unexpected value: " + pointer);
+                        };
+                        if (offset >= -2048 && offset < 2048)
+                            mFunc.getIrs().add(new RriMIR(RriMIR.Op.ADDI, target, base, offset));
+                        else {
+                            VReg midReg = new VReg(BasicType.I32);
+                            MIROpHelper.loadImmToReg(mFunc.getIrs(), midReg, offset);
+                            mFunc.getIrs().add(new RrrMIR(RrrMIR.Op.ADD, target, base, midReg));
+                        }
+                        continue;
+                    }
                     if (pointer instanceof GlobalVariable global) {
                         VReg midReg1 = new VReg(BasicType.I32);
                         VReg midReg2 = new VReg(BasicType.I32);
@@ -140,7 +257,9 @@ public class MIRGenerator {
                         mFunc.getIrs().add(new LiMIR(midReg2, getElementPtrInst.getType().baseType().getSize() / 8));
                         switch (getElementPtrInst.getLastOperand()) {
                             case Instruction indexInst ->
-                                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg3, instRegMap.get(indexInst)));
+                                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg3, valueRegMap.get(indexInst)));
+                            case Argument argument ->
+                                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg3, valueRegMap.get(argument)));
                             case ConstantNumber value -> {
                                 if (value.getType() == BasicType.FLOAT) {
                                     VReg midReg = new VReg(BasicType.I32);
@@ -153,20 +272,20 @@ public class MIRGenerator {
                                     throw new IllegalStateException("Unexpected value: " + getElementPtrInst.getLastOperand());
                         }
                         mFunc.getIrs().add(new RrrMIR(RrrMIR.Op.MUL, midReg4, midReg2, midReg3));
-                        mFunc.getIrs().add(new RrrMIR(RrrMIR.Op.ADD, instRegMap.get(getElementPtrInst), midReg1, midReg4));
+                        mFunc.getIrs().add(new RrrMIR(RrrMIR.Op.ADD, valueRegMap.get(getElementPtrInst), midReg1, midReg4));
                         continue;
                     }
                     if (pointer instanceof Argument arg) {
-                        Pair<Boolean, Integer> innerOffset = argOffsets.get(arg);
-                        VReg midReg1 = new VReg(BasicType.I32);
+                        VReg midReg1 = valueRegMap.get(arg);
                         VReg midReg2 = new VReg(BasicType.I32);
                         VReg midReg3 = new VReg(BasicType.I32);
                         VReg midReg4 = new VReg(BasicType.I32);
-                        mFunc.getIrs().add(new LoadItemMIR(innerOffset.getLeft() ? LoadItemMIR.Item.PARAM_INNER : LoadItemMIR.Item.PARAM_OUTER, midReg1, innerOffset.getRight()));
                         mFunc.getIrs().add(new LiMIR(midReg2, getElementPtrInst.getType().baseType().getSize() / 8));
                         switch (getElementPtrInst.getLastOperand()) {
                             case Instruction indexInst ->
-                                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg3, instRegMap.get(indexInst)));
+                                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg3, valueRegMap.get(indexInst)));
+                            case Argument argument ->
+                                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg3, valueRegMap.get(argument)));
                             case ConstantNumber value -> {
                                 if (value.getType() == BasicType.FLOAT) {
                                     VReg midReg = new VReg(BasicType.I32);
@@ -179,7 +298,7 @@ public class MIRGenerator {
                                     throw new IllegalStateException("Unexpected value: " + getElementPtrInst.getLastOperand());
                         }
                         mFunc.getIrs().add(new RrrMIR(RrrMIR.Op.MUL, midReg4, midReg2, midReg3));
-                        mFunc.getIrs().add(new RrrMIR(RrrMIR.Op.ADD, instRegMap.get(getElementPtrInst), midReg1, midReg4));
+                        mFunc.getIrs().add(new RrrMIR(RrrMIR.Op.ADD, valueRegMap.get(getElementPtrInst), midReg1, midReg4));
                     }
                     if (pointer instanceof AllocaInst allocaInst) {
                         if (getElementPtrInst.size() == 3) {
@@ -190,7 +309,9 @@ public class MIRGenerator {
                             mFunc.getIrs().add(new AddRegLocalMIR(midReg1, localOffsets.get(allocaInst)));
                             switch (getElementPtrInst.getLastOperand()) {
                                 case Instruction indexInst ->
-                                        mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg2, instRegMap.get(indexInst)));
+                                        mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg2, valueRegMap.get(indexInst)));
+                                case Argument argument ->
+                                        mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg2, valueRegMap.get(argument)));
                                 case ConstantNumber value -> {
                                     if (value.getType() == BasicType.FLOAT) {
                                         VReg midReg = new VReg(BasicType.I32);
@@ -204,7 +325,7 @@ public class MIRGenerator {
                             }
                             mFunc.getIrs().add(new LiMIR(midReg3, pointer.getType().baseType().baseType().getSize() / 8));
                             mFunc.getIrs().add(new RrrMIR(RrrMIR.Op.MUL, midReg4, midReg2, midReg3));
-                            mFunc.getIrs().add(new RrrMIR(RrrMIR.Op.ADD, instRegMap.get(getElementPtrInst), midReg1, midReg4));
+                            mFunc.getIrs().add(new RrrMIR(RrrMIR.Op.ADD, valueRegMap.get(getElementPtrInst), midReg1, midReg4));
                         } else {
                             VReg midReg1 = new VReg(BasicType.I32);
                             VReg midReg2 = new VReg(BasicType.I32);
@@ -213,7 +334,9 @@ public class MIRGenerator {
                             mFunc.getIrs().add(new AddRegLocalMIR(midReg1, localOffsets.get(allocaInst)));
                             switch (getElementPtrInst.getLastOperand()) {
                                 case Instruction indexInst ->
-                                        mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg2, instRegMap.get(indexInst)));
+                                        mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg2, valueRegMap.get(indexInst)));
+                                case Argument argument ->
+                                        mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg2, valueRegMap.get(argument)));
                                 case ConstantNumber value -> {
                                     if (value.getType() == BasicType.FLOAT) {
                                         VReg midReg = new VReg(BasicType.I32);
@@ -227,7 +350,7 @@ public class MIRGenerator {
                             }
                             mFunc.getIrs().add(new LiMIR(midReg3, pointer.getType().baseType().getSize() / 8));
                             mFunc.getIrs().add(new RrrMIR(RrrMIR.Op.MUL, midReg4, midReg2, midReg3));
-                            mFunc.getIrs().add(new RrrMIR(RrrMIR.Op.ADD, instRegMap.get(getElementPtrInst), midReg1, midReg4));
+                            mFunc.getIrs().add(new RrrMIR(RrrMIR.Op.ADD, valueRegMap.get(getElementPtrInst), midReg1, midReg4));
                         }
                         continue;
                     }
@@ -238,7 +361,9 @@ public class MIRGenerator {
                             VReg midReg3 = new VReg(BasicType.I32);
                             switch (getElementPtrInst.getLastOperand()) {
                                 case Instruction indexInst ->
-                                        mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg1, instRegMap.get(indexInst)));
+                                        mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg1, valueRegMap.get(indexInst)));
+                                case Argument argument ->
+                                        mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg1, valueRegMap.get(argument)));
                                 case ConstantNumber value -> {
                                     if (value.getType() == BasicType.FLOAT) {
                                         VReg midReg = new VReg(BasicType.I32);
@@ -252,14 +377,16 @@ public class MIRGenerator {
                             }
                             mFunc.getIrs().add(new LiMIR(midReg2, pointer.getType().baseType().baseType().getSize() / 8));
                             mFunc.getIrs().add(new RrrMIR(RrrMIR.Op.MUL, midReg3, midReg1, midReg2));
-                            mFunc.getIrs().add(new RrrMIR(RrrMIR.Op.ADD, instRegMap.get(getElementPtrInst), instRegMap.get(pointerInst), midReg3));
+                            mFunc.getIrs().add(new RrrMIR(RrrMIR.Op.ADD, valueRegMap.get(getElementPtrInst), valueRegMap.get(pointerInst), midReg3));
                         } else {
                             VReg midReg1 = new VReg(BasicType.I32);
                             VReg midReg2 = new VReg(BasicType.I32);
                             VReg midReg3 = new VReg(BasicType.I32);
                             switch (getElementPtrInst.getLastOperand()) {
                                 case Instruction indexInst ->
-                                        mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg1, instRegMap.get(indexInst)));
+                                        mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg1, valueRegMap.get(indexInst)));
+                                case Argument argument ->
+                                        mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg1, valueRegMap.get(argument)));
                                 case ConstantNumber value -> {
                                     if (value.getType() == BasicType.FLOAT) {
                                         VReg midReg = new VReg(BasicType.I32);
@@ -273,7 +400,7 @@ public class MIRGenerator {
                             }
                             mFunc.getIrs().add(new LiMIR(midReg2, pointer.getType().baseType().getSize() / 8));
                             mFunc.getIrs().add(new RrrMIR(RrrMIR.Op.MUL, midReg3, midReg1, midReg2));
-                            mFunc.getIrs().add(new RrrMIR(RrrMIR.Op.ADD, instRegMap.get(getElementPtrInst), instRegMap.get(pointerInst), midReg3));
+                            mFunc.getIrs().add(new RrrMIR(RrrMIR.Op.ADD, valueRegMap.get(getElementPtrInst), valueRegMap.get(pointerInst), midReg3));
                         }
                     }
                     continue;
@@ -283,21 +410,21 @@ public class MIRGenerator {
                     if (pointer instanceof GlobalVariable global) {
                         VReg midReg = new VReg(BasicType.I32);
                         mFunc.getIrs().add(new LlaMIR(midReg, global));
-                        mFunc.getIrs().add(new LoadMIR(instRegMap.get(loadInst), midReg, 0, 4));
+                        mFunc.getIrs().add(new LoadMIR(valueRegMap.get(loadInst), midReg, 0, 4));
                         continue;
                     }
                     if (pointer instanceof Argument arg) {
                         Pair<Boolean, Integer> innerOffset = argOffsets.get(arg);
-                        mFunc.getIrs().add(new LoadItemMIR(innerOffset.getLeft() ? LoadItemMIR.Item.PARAM_INNER : LoadItemMIR.Item.PARAM_OUTER, instRegMap.get(loadInst), innerOffset.getRight()));
+                        mFunc.getIrs().add(new LoadItemMIR(innerOffset.getLeft() ? LoadItemMIR.Item.PARAM_INNER : LoadItemMIR.Item.PARAM_OUTER, valueRegMap.get(loadInst), innerOffset.getRight()));
                     }
                     if (pointer instanceof AllocaInst allocaInst) {
                         VReg midReg = new VReg(BasicType.I32);
                         mFunc.getIrs().add(new AddRegLocalMIR(midReg, localOffsets.get(allocaInst)));
-                        mFunc.getIrs().add(new LoadMIR(instRegMap.get(loadInst), midReg, 0, allocaInst.getType().baseType().getSize() / 8));
+                        mFunc.getIrs().add(new LoadMIR(valueRegMap.get(loadInst), midReg, 0, allocaInst.getType().baseType().getSize() / 8));
                         continue;
                     }
                     if (pointer instanceof Instruction pointerInst) {
-                        mFunc.getIrs().add(new LoadMIR(instRegMap.get(loadInst), instRegMap.get(pointerInst), 0, pointerInst.getType().baseType().getSize() / 8));
+                        mFunc.getIrs().add(new LoadMIR(valueRegMap.get(loadInst), valueRegMap.get(pointerInst), 0, pointerInst.getType().baseType().getSize() / 8));
                     }
                     continue;
                 }
@@ -306,7 +433,9 @@ public class MIRGenerator {
                         Value retVal = retInst.getOperand(0);
                         switch (retVal) {
                             case Instruction valueInst ->
-                                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, retVal.getType() == BasicType.I32 ? MReg.A0 : MReg.FA0, instRegMap.get(valueInst)));
+                                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, retVal.getType() == BasicType.I32 ? MReg.A0 : MReg.FA0, valueRegMap.get(valueInst)));
+                            case Argument argument ->
+                                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, retVal.getType() == BasicType.I32 ? MReg.A0 : MReg.FA0, valueRegMap.get(argument)));
                             case ConstantNumber value -> {
                                 switch (value.getType()) {
                                     case BasicType.I32 -> mFunc.getIrs().add(new LiMIR(MReg.A0, value.intValue()));
@@ -333,7 +462,9 @@ public class MIRGenerator {
                         mFunc.getIrs().add(new LlaMIR(midReg1, global));
                         switch (value) {
                             case Instruction valueInst ->
-                                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg2, instRegMap.get(valueInst)));
+                                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg2, valueRegMap.get(valueInst)));
+                            case Argument argument ->
+                                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg2, valueRegMap.get(argument)));
                             case ConstantNumber v -> {
                                 if (v.getType() == BasicType.FLOAT) {
                                     VReg midReg = new VReg(BasicType.I32);
@@ -354,7 +485,9 @@ public class MIRGenerator {
                         mFunc.getIrs().add(new LoadItemMIR(innerOffset.getLeft() ? LoadItemMIR.Item.PARAM_INNER : LoadItemMIR.Item.PARAM_OUTER, midReg1, innerOffset.getRight()));
                         switch (value) {
                             case Instruction valueInst ->
-                                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg2, instRegMap.get(valueInst)));
+                                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg2, valueRegMap.get(valueInst)));
+                            case Argument argument ->
+                                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg2, valueRegMap.get(argument)));
                             case ConstantNumber v -> {
                                 if (v.getType() == BasicType.FLOAT) {
                                     VReg midReg = new VReg(BasicType.I32);
@@ -372,9 +505,9 @@ public class MIRGenerator {
                         VReg midReg2 = new VReg(BasicType.I32);
                         switch (value) {
                             case Instruction valueInst ->
-                                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg1, instRegMap.get(valueInst)));
-                            case Argument arg ->
-                                    mFunc.getIrs().add(new LoadItemMIR(argOffsets.get(arg).getLeft() ? LoadItemMIR.Item.PARAM_INNER : LoadItemMIR.Item.PARAM_OUTER, midReg1, argOffsets.get(arg).getRight()));
+                                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg1, valueRegMap.get(valueInst)));
+                            case Argument argument ->
+                                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg1, valueRegMap.get(argument)));
                             case ConstantNumber v -> {
                                 if (v.getType() == BasicType.FLOAT) {
                                     VReg midReg = new VReg(BasicType.I32);
@@ -393,7 +526,9 @@ public class MIRGenerator {
                         VReg midReg = new VReg(BasicType.I32);
                         switch (value) {
                             case Instruction valueInst ->
-                                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg, instRegMap.get(valueInst)));
+                                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg, valueRegMap.get(valueInst)));
+                            case Argument argument ->
+                                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, midReg, valueRegMap.get(argument)));
                             case ConstantNumber v -> {
                                 if (v.getType() == BasicType.FLOAT) {
                                     VReg midReg1 = new VReg(BasicType.I32);
@@ -404,7 +539,7 @@ public class MIRGenerator {
                             }
                             default -> throw new IllegalStateException("Unexpected value: " + value);
                         }
-                        mFunc.getIrs().add(new StoreMIR(midReg, instRegMap.get(pointerInst), 0, pointerInst.getType().baseType().getSize() / 8));
+                        mFunc.getIrs().add(new StoreMIR(midReg, valueRegMap.get(pointerInst), 0, pointerInst.getType().baseType().getSize() / 8));
                     }
                     continue;
                 }
@@ -412,30 +547,42 @@ public class MIRGenerator {
                     continue;
                 }
                 if (inst instanceof BitCastInst bitCastInst) {
-                    Instruction operand = bitCastInst.getOperand(0);
-                    VReg srcReg = instRegMap.get(operand);
-                    if (operand instanceof AllocaInst allocaInst) {
-                        srcReg = new VReg(BasicType.I32);
-                        mFunc.getIrs().add(new AddRegLocalMIR(srcReg, localOffsets.get(allocaInst)));
-                    }
-                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, instRegMap.get(bitCastInst), srcReg));
+                    Value operand = bitCastInst.getOperand(0);
+                    VReg srcReg = switch (operand) {
+                        case AllocaInst allocaInst -> {
+                            VReg midReg = new VReg(BasicType.I32);
+                            mFunc.getIrs().add(new AddRegLocalMIR(midReg, localOffsets.get(allocaInst)));
+                            yield midReg;
+                        }
+                        case GlobalVariable global -> {
+                            VReg midReg = new VReg(BasicType.I32);
+                            mFunc.getIrs().add(new LlaMIR(midReg, global));
+                            yield midReg;
+                        }
+                        case Argument arg -> valueRegMap.get(arg);
+                        case Instruction operandInst -> valueRegMap.get(operandInst);
+                        default -> throw new IllegalStateException("Unexpected value: " + operand);
+                    };
+                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, valueRegMap.get(bitCastInst), srcReg));
                     continue;
                 }
                 if (inst instanceof ICmpInst iCmpInst) {
-                    VReg target = instRegMap.get(iCmpInst);
+                    VReg target = valueRegMap.get(iCmpInst);
                     VReg operand1 = switch (iCmpInst.getOperand(0)) {
-                        case Instruction valueInst -> instRegMap.get(valueInst);
+                        case Instruction valueInst -> valueRegMap.get(valueInst);
+                        case Argument argument -> valueRegMap.get(argument);
                         case ConstantNumber value -> {
-                            VReg midReg = new VReg(value.getType());
+                            VReg midReg = new VReg(BasicType.I32);
                             mFunc.getIrs().add(new LiMIR(midReg, value.intValue()));
                             yield midReg;
                         }
                         default -> throw new IllegalStateException("Unexpected value: " + iCmpInst.getOperand(0));
                     };
                     VReg operand2 = switch (iCmpInst.getOperand(1)) {
-                        case Instruction valueInst -> instRegMap.get(valueInst);
+                        case Instruction valueInst -> valueRegMap.get(valueInst);
+                        case Argument argument -> valueRegMap.get(argument);
                         case ConstantNumber value -> {
-                            VReg midReg = new VReg(value.getType());
+                            VReg midReg = new VReg(BasicType.I32);
                             mFunc.getIrs().add(new LiMIR(midReg, value.intValue()));
                             yield midReg;
                         }
@@ -468,9 +615,10 @@ public class MIRGenerator {
                     continue;
                 }
                 if (inst instanceof FCmpInst fCmpInst) {
-                    VReg target = instRegMap.get(fCmpInst);
+                    VReg target = valueRegMap.get(fCmpInst);
                     VReg operand1 = switch (fCmpInst.getOperand(0)) {
-                        case Instruction valueInst -> instRegMap.get(valueInst);
+                        case Instruction valueInst -> valueRegMap.get(valueInst);
+                        case Argument argument -> valueRegMap.get(argument);
                         case ConstantNumber value -> {
                             VReg midReg1 = new VReg(BasicType.I32);
                             VReg midReg2 = new VReg(BasicType.FLOAT);
@@ -481,7 +629,8 @@ public class MIRGenerator {
                         default -> throw new IllegalStateException("Unexpected value: " + fCmpInst.getOperand(0));
                     };
                     VReg operand2 = switch (fCmpInst.getOperand(1)) {
-                        case Instruction valueInst -> instRegMap.get(valueInst);
+                        case Instruction valueInst -> valueRegMap.get(valueInst);
+                        case Argument argument -> valueRegMap.get(argument);
                         case ConstantNumber value -> {
                             VReg midReg1 = new VReg(BasicType.I32);
                             VReg midReg2 = new VReg(BasicType.FLOAT);
@@ -508,33 +657,36 @@ public class MIRGenerator {
                 }
                 if (inst instanceof ZExtInst zExtInst) {
                     VReg operand = switch (zExtInst.getOperand(0)) {
-                        case Instruction valueInst -> instRegMap.get(valueInst);
+                        case Instruction valueInst -> valueRegMap.get(valueInst);
+                        case Argument argument -> valueRegMap.get(argument);
                         case ConstantNumber value -> {
-                            VReg midReg = new VReg(value.getType());
+                            VReg midReg = new VReg(BasicType.I32);
                             mFunc.getIrs().add(new LiMIR(midReg, value.intValue()));
                             yield midReg;
                         }
                         default -> throw new IllegalStateException("Unexpected value: " + zExtInst.getOperand(0));
                     };
-                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, instRegMap.get(zExtInst), operand));
+                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.MV, valueRegMap.get(zExtInst), operand));
                     continue;
                 }
                 if (inst instanceof SExtInst sExtInst) {
                     VReg operand = switch (sExtInst.getOperand(0)) {
-                        case Instruction valueInst -> instRegMap.get(valueInst);
+                        case Instruction valueInst -> valueRegMap.get(valueInst);
+                        case Argument argument -> valueRegMap.get(argument);
                         case ConstantNumber value -> {
-                            VReg midReg = new VReg(value.getType());
+                            VReg midReg = new VReg(BasicType.I32);
                             mFunc.getIrs().add(new LiMIR(midReg, value.intValue()));
                             yield midReg;
                         }
                         default -> throw new IllegalStateException("Unexpected value: " + sExtInst.getOperand(0));
                     };
-                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.NEG, instRegMap.get(sExtInst), operand));
+                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.NEG, valueRegMap.get(sExtInst), operand));
                     continue;
                 }
                 if (inst instanceof FPToSIInst fpToSIInst) {
                     VReg operand = switch (fpToSIInst.getOperand(0)) {
-                        case Instruction valueInst -> instRegMap.get(valueInst);
+                        case Instruction valueInst -> valueRegMap.get(valueInst);
+                        case Argument argument -> valueRegMap.get(argument);
                         case ConstantNumber value -> {
                             VReg midReg1 = new VReg(BasicType.I32);
                             VReg midReg2 = new VReg(BasicType.FLOAT);
@@ -544,20 +696,21 @@ public class MIRGenerator {
                         }
                         default -> throw new IllegalStateException("Unexpected value: " + fpToSIInst.getOperand(0));
                     };
-                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.CVT, instRegMap.get(fpToSIInst), operand));
+                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.CVT, valueRegMap.get(fpToSIInst), operand));
                     continue;
                 }
                 if (inst instanceof SIToFPInst siToFPInst) {
                     VReg operand = switch (siToFPInst.getOperand(0)) {
-                        case Instruction valueInst -> instRegMap.get(valueInst);
+                        case Instruction valueInst -> valueRegMap.get(valueInst);
+                        case Argument argument -> valueRegMap.get(argument);
                         case ConstantNumber value -> {
-                            VReg midReg = new VReg(value.getType());
+                            VReg midReg = new VReg(BasicType.I32);
                             mFunc.getIrs().add(new LiMIR(midReg, value.intValue()));
                             yield midReg;
                         }
                         default -> throw new IllegalStateException("Unexpected value: " + siToFPInst.getOperand(0));
                     };
-                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.CVT, instRegMap.get(siToFPInst), operand));
+                    mFunc.getIrs().add(new RrMIR(RrMIR.Op.CVT, valueRegMap.get(siToFPInst), operand));
                     continue;
                 }
                 throw new IllegalStateException("Unexpected value: " + inst);
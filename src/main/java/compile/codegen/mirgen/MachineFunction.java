@@ -1,15 +1,19 @@
 package compile.codegen.mirgen;
 
 import compile.codegen.mirgen.mir.MIR;
+import compile.llvm.BasicBlock;
 import compile.llvm.Function;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class MachineFunction {
     private final Function func;
     private final List<MIR> irs = new ArrayList<>();
     private final int localSize, iCallerNum, fCallerNum;
+    private final Map<BasicBlock, Integer> loopDepths = new HashMap<>();
     private int maxFuncParamNum = 0;
 
     public MachineFunction(Function func, int localSize, int iCallerNum, int fCallerNum) {
@@ -47,6 +51,14 @@ public class MachineFunction {
         this.maxFuncParamNum = maxFuncParamNum;
     }
 
+    public int getLoopDepth(BasicBlock block) {
+        return loopDepths.getOrDefault(block, 0);
+    }
+
+    public void setLoopDepth(BasicBlock block, int depth) {
+        loopDepths.put(block, depth);
+    }
+
     public String getName() {
         return func.getName();
     }
@@ -70,6 +70,6 @@ public class RriMIR extends MIR {
     }
 
     public enum Op {
-        ADDI, ANDI, SLLIW, SRAIW, SRLI, SRLIW, XORI
+        ADDI, ADDIW, ANDI, SLLIW, SRAIW, SRLI, SRLIW, XORI
     }
 }
@@ -4,8 +4,8 @@ import compile.codegen.VReg;
 import compile.codegen.mirgen.mir.*;
 import compile.llvm.contant.ConstantNumber;
 import compile.llvm.ir.BinaryOperator;
-import compile.llvm.ir.Instruction;
 import compile.llvm.type.BasicType;
+import compile.llvm.value.Value;
 
 import java.util.List;
 import java.util.Map;
@@ -19,7 +19,7 @@ public final class MIRBinaryTrans {
 
     static void transAddRegImmI(List<MIR> irs, VReg target, VReg source, int imm) {
         if (imm >= -2048 && imm < 2048) {
-            irs.add(new RriMIR(RriMIR.Op.ADDI, target, source, imm));
+            irs.add(new RriMIR(RriMIR.Op.ADDIW, target, source, imm));
             return;
         }
         VReg midReg = new VReg(BasicType.I32);
@@ -32,11 +32,11 @@ public final class MIRBinaryTrans {
     }
 
     private static void transAddRegRegI(List<MIR> irs, VReg target, VReg source1, VReg source2) {
-        irs.add(new RrrMIR(RrrMIR.Op.ADD, target, source1, source2));
+        irs.add(new RrrMIR(RrrMIR.Op.ADDW, target, source1, source2));
     }
 
-    static void transBinaryImmReg(List<MIR> irs, Map<Instruction, VReg> instRegMap, BinaryOperator binaryOperator, ConstantNumber value, VReg reg) {
-        VReg target = instRegMap.get(binaryOperator);
+    static void transBinaryImmReg(List<MIR> irs, Map<Value, VReg> valueRegMap, BinaryOperator binaryOperator, ConstantNumber value, VReg reg) {
+        VReg target = valueRegMap.get(binaryOperator);
         switch (binaryOperator.op) {
             case ADD -> transAddRegImmI(irs, target, reg, value.intValue());
             case FADD -> transAddRegImmF(irs, target, reg, value.floatValue());
@@ -47,12 +47,13 @@ public final class MIRBinaryTrans {
             case FMUL -> transMulRegImmF(irs, target, reg, value.floatValue());
             case SUB -> transSubImmRegI(irs, target, value.intValue(), reg);
             case FSUB -> transSubImmRegF(irs, target, value.floatValue(), reg);
+            case XOR -> transBinaryRegImm(irs, valueRegMap, binaryOperator, reg, value);
             default -> throw new RuntimeException();
         }
     }
 
-    static void transBinaryRegImm(List<MIR> irs, Map<Instruction, VReg> instRegMap, BinaryOperator binaryOperator, VReg reg, ConstantNumber value) {
-        VReg target = instRegMap.get(binaryOperator);
+    static void transBinaryRegImm(List<MIR> irs, Map<Value, VReg> valueRegMap, BinaryOperator binaryOperator, VReg reg, ConstantNumber value) {
+        VReg target = valueRegMap.get(binaryOperator);
         switch (binaryOperator.op) {
             case ADD -> transAddRegImmI(irs, target, reg, value.intValue());
             case FADD -> transAddRegImmF(irs, target, reg, value.floatValue());
@@ -64,6 +65,10 @@ public final class MIRBinaryTrans {
             case SUB -> transSubRegImmI(irs, target, reg, value.intValue());
             case FSUB -> transSubRegImmF(irs, target, reg, value.floatValue());
             case XOR -> {
+                if (value.intValue() >= -2048 && value.intValue() < 2048) {
+                    irs.add(new RriMIR(RriMIR.Op.XORI, target, reg, value.intValue()));
+                    return;
+                }
                 VReg midReg = new VReg(BasicType.I32);
                 MIROpHelper.loadImmToReg(irs, midReg, value.intValue());
                 irs.add(new RrrMIR(RrrMIR.Op.XOR, target, reg, midReg));
@@ -72,8 +77,8 @@ public final class MIRBinaryTrans {
         }
     }
 
-    static void transBinaryRegReg(List<MIR> irs, Map<Instruction, VReg> instRegMap, BinaryOperator binaryOperator, VReg reg1, VReg reg2) {
-        VReg target = instRegMap.get(binaryOperator);
+    static void transBinaryRegReg(List<MIR> irs, Map<Value, VReg> valueRegMap, BinaryOperator binaryOperator, VReg reg1, VReg reg2) {
+        VReg target = valueRegMap.get(binaryOperator);
         switch (binaryOperator.op) {
             case ADD -> transAddRegRegI(irs, target, reg1, reg2);
             case FADD -> transAddRegRegF(irs, target, reg1, reg2);
@@ -84,6 +89,7 @@ public final class MIRBinaryTrans {
             case FMUL -> transMulRegRegF(irs, target, reg1, reg2);
             case SUB -> transSubRegRegI(irs, target, reg1, reg2);
             case FSUB -> transSubRegRegF(irs, target, reg1, reg2);
+            case XOR -> irs.add(new RrrMIR(RrrMIR.Op.XOR, target, reg1, reg2));
             default -> throw new RuntimeException();
         }
     }
@@ -147,7 +153,7 @@ public final class MIRBinaryTrans {
             irs.add(new RrrMIR(RrrMIR.Op.ADDW, target, midReg3, midReg4));
         } else {
             irs.add(new RriMIR(RriMIR.Op.SRAIW, midReg4, source, 31));
-            irs.add(new RrrMIR(RrrMIR.Op.SUBW, target, midReg3, midReg4));
+            irs.add(new RrrMIR(RrrMIR.Op.SUBW, target, midReg4, midReg3));
         }
     }
 
@@ -166,8 +172,8 @@ public final class MIRBinaryTrans {
     }
 
     private static void transModRegImm(List<MIR> irs, VReg target, VReg source, int imm) {
-        if (imm == 1) {
-            irs.add(new RrMIR(RrMIR.Op.MV, target, source));
+        if (imm == 1 || imm == -1) {
+            MIROpHelper.loadImmToReg(irs, target, 0);
             return;
         }
         if (Integer.bitCount(imm) == 1) {
@@ -268,7 +274,7 @@ public final class MIRBinaryTrans {
 
     private static void transSubRegImmI(List<MIR> irs, VReg target, VReg source, int imm) {
         if (-imm >= -2048 && -imm < 2048) {
-            irs.add(new RriMIR(RriMIR.Op.ADDI, target, source, -imm));
+            irs.add(new RriMIR(RriMIR.Op.ADDIW, target, source, -imm));
             return;
         }
         VReg midReg = new VReg(BasicType.I32);
@@ -3,6 +3,7 @@ package compile.codegen.mirgen.trans;
 import compile.codegen.MReg;
 import compile.codegen.VReg;
 import compile.codegen.mirgen.mir.*;
+import compile.llvm.Argument;
 import compile.llvm.BasicBlock;
 import compile.llvm.Function;
 import compile.llvm.GlobalVariable;
@@ -17,7 +18,7 @@ import java.util.List;
 import java.util.Map;
 
 public final class MIROpTrans {
-    public static void transBranch(List<MIR> irs, Map<Instruction, VReg> instRegMap, BranchInst branchInst) {
+    public static void transBranch(List<MIR> irs, Map<Value, VReg> valueRegMap, BranchInst branchInst) {
         if (!branchInst.isConditional()) {
             BasicBlock dest = branchInst.getOperand(0);
             irs.add(new BMIR(null, null, null, dest));
@@ -27,9 +28,10 @@ public final class MIROpTrans {
         BasicBlock ifTrue = branchInst.getOperand(1);
         BasicBlock ifFalse = branchInst.getOperand(2);
         VReg reg = switch (cond) {
-            case Instruction ir -> instRegMap.get(ir);
+            case Instruction ir -> valueRegMap.get(ir);
+            case Argument argument -> valueRegMap.get(argument);
             case ConstantNumber value -> {
-                VReg midReg = new VReg(value.getType());
+                VReg midReg = new VReg(value.getType() == BasicType.FLOAT ? BasicType.FLOAT : BasicType.I32);
                 if (value.getType() == BasicType.FLOAT)
                     MIROpHelper.loadImmToReg(irs, midReg, value.floatValue());
                 else
@@ -42,35 +44,31 @@ public final class MIROpTrans {
         irs.add(new BMIR(null, null, null, ifFalse));
     }
 
-    public static void transBinary(List<MIR> irs, Map<Instruction, VReg> instRegMap, BinaryOperator binaryOperator) {
+    public static void transBinary(List<MIR> irs, Map<Value, VReg> valueRegMap, BinaryOperator binaryOperator) {
         Value operand1 = binaryOperator.getOperand(0);
         Value operand2 = binaryOperator.getOperand(1);
-        if (operand1 instanceof Instruction inst1 && operand2 instanceof Instruction inst2) {
-            MIRBinaryTrans.transBinaryRegReg(irs, instRegMap, binaryOperator, instRegMap.get(inst1), instRegMap.get(inst2));
-            return;
-        }
-        if (operand1 instanceof Instruction inst1 && operand2 instanceof ConstantNumber value2) {
-            MIRBinaryTrans.transBinaryRegImm(irs, instRegMap, binaryOperator, instRegMap.get(inst1), value2);
-            return;
-        }
-        if (operand1 instanceof ConstantNumber value1 && operand2 instanceof Instruction inst2) {
-            MIRBinaryTrans.transBinaryImmReg(irs, instRegMap, binaryOperator, value1, instRegMap.get(inst2));
-            return;
-        }
         if (operand1 instanceof ConstantNumber value1 && operand2 instanceof ConstantNumber value2) {
-            VReg midReg = new VReg(value1.getType());
+            VReg midReg = new VReg(value1.getType() == BasicType.FLOAT ? BasicType.FLOAT : BasicType.I32);
             switch (value1.getType()) {
-                case BasicType.I32 -> MIROpHelper.loadImmToReg(irs, midReg, value1.intValue());
+                case BasicType.I1, BasicType.I32 -> MIROpHelper.loadImmToReg(irs, midReg, value1.intValue());
                 case BasicType.FLOAT -> MIROpHelper.loadImmToReg(irs, midReg, value1.floatValue());
                 default -> throw new IllegalStateException("Unexpected value: " + value1.getType());
             }
-            MIRBinaryTrans.transBinaryRegImm(irs, instRegMap, binaryOperator, midReg, value2);
+            MIRBinaryTrans.transBinaryRegImm(irs, valueRegMap, binaryOperator, midReg, value2);
+            return;
+        }
+        if (operand2 instanceof ConstantNumber value2) {
+            MIRBinaryTrans.transBinaryRegImm(irs, valueRegMap, binaryOperator, valueRegMap.get(operand1), value2);
+            return;
+        }
+        if (operand1 instanceof ConstantNumber value1) {
+            MIRBinaryTrans.transBinaryImmReg(irs, valueRegMap, binaryOperator, value1, valueRegMap.get(operand2));
             return;
         }
-        throw new RuntimeException();
+        MIRBinaryTrans.transBinaryRegReg(irs, valueRegMap, binaryOperator, valueRegMap.get(operand1), valueRegMap.get(operand2));
     }
 
-    public static int transCall(List<MIR> irs, Map<Instruction, VReg> instRegMap, CallInst callInst, Map<AllocaInst, Integer> localOffsets) {
+    public static int transCall(List<MIR> irs, Map<Value, VReg> valueRegMap, CallInst callInst, Map<AllocaInst, Integer> localOffsets) {
         Function func = callInst.getOperand(0);
         List<MIR> saveCalleeIRs = new ArrayList<>();
         int iSize = 0, fSize = 0;
@@ -80,9 +78,11 @@ public final class MIROpTrans {
                 if (fSize < MReg.F_CALLER_REGS.size()) {
                     switch (param) {
                         case AllocaInst allocaInst ->
-                                saveCalleeIRs.add(new RrMIR(RrMIR.Op.MV, MReg.F_CALLER_REGS.get(fSize), instRegMap.get(allocaInst)));
+                                saveCalleeIRs.add(new RrMIR(RrMIR.Op.MV, MReg.F_CALLER_REGS.get(fSize), valueRegMap.get(allocaInst)));
                         case Instruction inst ->
-                                saveCalleeIRs.add(new RrMIR(RrMIR.Op.MV, MReg.F_CALLER_REGS.get(fSize), instRegMap.get(inst)));
+                                saveCalleeIRs.add(new RrMIR(RrMIR.Op.MV, MReg.F_CALLER_REGS.get(fSize), valueRegMap.get(inst)));
+                        case Argument argument ->
+                                saveCalleeIRs.add(new RrMIR(RrMIR.Op.MV, MReg.F_CALLER_REGS.get(fSize), valueRegMap.get(argument)));
                         case ConstantNumber value ->
                                 MIROpHelper.loadImmToReg(saveCalleeIRs, MReg.F_CALLER_REGS.get(fSize), value.floatValue());
                         default -> throw new IllegalStateException("Unexpected value: " + param);
@@ -90,7 +90,9 @@ public final class MIROpTrans {
                 } else {
                     switch (param) {
                         case Instruction inst ->
-                                irs.add(new StoreItemMIR(StoreItemMIR.Item.PARAM_CALL, instRegMap.get(inst), (Integer.max(iSize - MReg.I_CALLER_REGS.size(), 0) + Integer.max(fSize - MReg.I_CALLER_REGS.size(), 0)) * 8));
+                                irs.add(new StoreItemMIR(StoreItemMIR.Item.PARAM_CALL, valueRegMap.get(inst), (Integer.max(iSize - MReg.I_CALLER_REGS.size(), 0) + Integer.max(fSize - MReg.I_CALLER_REGS.size(), 0)) * 8));
+                        case Argument argument ->
+                                irs.add(new StoreItemMIR(StoreItemMIR.Item.PARAM_CALL, valueRegMap.get(argument), (Integer.max(iSize - MReg.I_CALLER_REGS.size(), 0) + Integer.max(fSize - MReg.I_CALLER_REGS.size(), 0)) * 8));
                         case ConstantNumber value -> {
                             VReg midReg = new VReg(BasicType.I32);
                             MIROpHelper.loadImmToReg(irs, midReg, value.floatValue());
@@ -109,10 +111,12 @@ public final class MIROpTrans {
                             if (allocaInst.getType() instanceof PointerType)
                                 saveCalleeIRs.add(new AddRegLocalMIR(MReg.I_CALLER_REGS.get(iSize), localOffsets.get(allocaInst)));
                             else
-                                saveCalleeIRs.add(new RrMIR(RrMIR.Op.MV, MReg.I_CALLER_REGS.get(iSize), instRegMap.get(allocaInst)));
+                                saveCalleeIRs.add(new RrMIR(RrMIR.Op.MV, MReg.I_CALLER_REGS.get(iSize), valueRegMap.get(allocaInst)));
                         }
                         case Instruction inst ->
-                                saveCalleeIRs.add(new RrMIR(RrMIR.Op.MV, MReg.I_CALLER_REGS.get(iSize), instRegMap.get(inst)));
+                                saveCalleeIRs.add(new RrMIR(RrMIR.Op.MV, MReg.I_CALLER_REGS.get(iSize), valueRegMap.get(inst)));
+                        case Argument argument ->
+                                saveCalleeIRs.add(new RrMIR(RrMIR.Op.MV, MReg.I_CALLER_REGS.get(iSize), valueRegMap.get(argument)));
                         case ConstantNumber value ->
                                 MIROpHelper.loadImmToReg(saveCalleeIRs, MReg.I_CALLER_REGS.get(iSize), value.intValue());
                         default -> throw new IllegalStateException("Unexpected value: " + param);
@@ -125,7 +129,9 @@ public final class MIROpTrans {
                             irs.add(new StoreItemMIR(StoreItemMIR.Item.PARAM_CALL, midReg, (Integer.max(iSize - MReg.I_CALLER_REGS.size(), 0) + Integer.max(fSize - MReg.I_CALLER_REGS.size(), 0)) * 8));
                         }
                         case Instruction inst ->
-                                irs.add(new StoreItemMIR(StoreItemMIR.Item.PARAM_CALL, instRegMap.get(inst), (Integer.max(iSize - MReg.I_CALLER_REGS.size(), 0) + Integer.max(fSize - MReg.I_CALLER_REGS.size(), 0)) * 8));
+                                irs.add(new StoreItemMIR(StoreItemMIR.Item.PARAM_CALL, valueRegMap.get(inst), (Integer.max(iSize - MReg.I_CALLER_REGS.size(), 0) + Integer.max(fSize - MReg.I_CALLER_REGS.size(), 0)) * 8));
+                        case Argument argument ->
+                                irs.add(new StoreItemMIR(StoreItemMIR.Item.PARAM_CALL, valueRegMap.get(argument), (Integer.max(iSize - MReg.I_CALLER_REGS.size(), 0) + Integer.max(fSize - MReg.I_CALLER_REGS.size(), 0)) * 8));
                         case ConstantNumber value -> {
                             VReg midReg = new VReg(BasicType.I32);
                             MIROpHelper.loadImmToReg(irs, midReg, value.intValue());
@@ -140,7 +146,7 @@ public final class MIROpTrans {
         irs.addAll(saveCalleeIRs);
         irs.add(new CallMIR(func));
         if (callInst.getType() != BasicType.VOID) {
-            VReg target = instRegMap.get(callInst);
+            VReg target = valueRegMap.get(callInst);
             irs.add(new RrMIR(RrMIR.Op.MV, target, switch (callInst.getType()) {
                 case BasicType.I32 -> MReg.A0;
                 case BasicType.FLOAT -> MReg.FA0;
@@ -149,4 +155,37 @@ public final class MIROpTrans {
         }
         return callInst.size() - 1;
     }
+
+    public static void transSelect(List<MIR> irs, Map<Value, VReg> valueRegMap, SelectInst selectInst) {
+        VReg cond = getIntReg(irs, valueRegMap, selectInst.getOperand(0));
+        VReg target = valueRegMap.get(selectInst);
+        VReg maskReg = new VReg(BasicType.I32);
+        if (selectInst.getOperand(2) instanceof ConstantNumber number && number.intValue() == 0) {
+            irs.add(new RrMIR(RrMIR.Op.NEG, maskReg, cond));
+            irs.add(new RrrMIR(RrrMIR.Op.AND, target, getIntReg(irs, valueRegMap, selectInst.getOperand(1)), maskReg));
+            return;
+        }
+        if (selectInst.getOperand(1) instanceof ConstantNumber number && number.intValue() == 0) {
+            irs.add(new RriMIR(RriMIR.Op.ADDI, maskReg, cond, -1));
+            irs.add(new RrrMIR(RrrMIR.Op.AND, target, getIntReg(irs, valueRegMap, selectInst.getOperand(2)), maskReg));
+            return;
+        }
+        VReg trueReg = getIntReg(irs, valueRegMap, selectInst.getOperand(1));
+        VReg falseReg = getIntReg(irs, valueRegMap, selectInst.getOperand(2));
+        VReg diffReg = new VReg(BasicType.I32);
+        VReg maskedReg = new VReg(BasicType.I32);
+        irs.add(new RrMIR(RrMIR.Op.NEG, maskReg, cond));
+        irs.add(new RrrMIR(RrrMIR.Op.XOR, diffReg, trueReg, falseReg));
+        irs.add(new RrrMIR(RrrMIR.Op.AND, maskedReg, diffReg, maskReg));
+        irs.add(new RrrMIR(RrrMIR.Op.XOR, target, falseReg, maskedReg));
+    }
+
+    private static VReg getIntReg(List<MIR> irs, Map<Value, VReg> valueRegMap, Value value) {
+        if (value instanceof ConstantNumber number) {
+            VReg midReg = new VReg(BasicType.I32);
+            MIROpHelper.loadImmToReg(irs, midReg, number.intValue());
+            return midReg;
+        }
+        return valueRegMap.get(value);
+    }
 }
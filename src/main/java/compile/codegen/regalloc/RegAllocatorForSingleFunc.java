@@ -363,12 +363,36 @@ public class RegAllocatorForSingleFunc {
         }
     }
 
+    private Map<VReg, Integer> calcSpillCosts() {
+        Map<VReg, Integer> spillCosts = new HashMap<>();
+        int weight = 1;
+        for (MIR ir : func.getIrs()) {
+            if (ir instanceof LabelMIR labelMIR)
+                weight = (int) Math.pow(10, Integer.min(func.getLoopDepth(labelMIR.getBlock()), 4));
+            for (Reg reg : ir.getRegs())
+                if (reg instanceof VReg vReg)
+                    spillCosts.put(vReg, spillCosts.getOrDefault(vReg, 0) + weight);
+        }
+        return spillCosts;
+    }
+
+    private Set<VReg> getVRegs() {
+        Set<VReg> vRegs = new HashSet<>();
+        for (MIR ir : func.getIrs())
+            for (Reg reg : ir.getRegs())
+                if (reg instanceof VReg vReg)
+                    vRegs.add(vReg);
+        return vRegs;
+    }
+
     private void solveSpill() {
         spillSize = 0;
+        Set<VReg> spillTempRegs = new HashSet<>();
         boolean toContinueOuter;
         do {
             toContinueOuter = false;
             Map<Reg, Set<Reg>> conflictMap = calcConflictMap();
+            Map<VReg, Integer> spillCosts = calcSpillCosts();
             Set<VReg> allocatedVRegs = new HashSet<>();
             Map<VReg, MReg> vReg2MRegMap = new HashMap<>();
             Map<VReg, Integer> spilledRegs = new HashMap<>();
@@ -403,11 +427,22 @@ public class RegAllocatorForSingleFunc {
                         }
                         if (toSpill) {
                             VReg toSpillReg = null;
-                            int maxVal = 0;
+                            double maxVal = 0;
                             for (VReg reg : allocatedVRegs) {
-                                if (conflictMap.get(reg).size() > maxVal) {
+                                if (spillTempRegs.contains(reg))
+                                    continue;
+                                double val = (double) conflictMap.get(reg).size() / spillCosts.getOrDefault(reg, 1);
+                                if (val > maxVal) {
                                     toSpillReg = reg;
-                                    maxVal = conflictMap.get(reg).size();
+                                    maxVal = val;
+                                }
+                            }
+                            if (toSpillReg == null) {
+                                for (VReg reg : allocatedVRegs) {
+                                    if (conflictMap.get(reg).size() > maxVal) {
+                                        toSpillReg = reg;
+                                        maxVal = conflictMap.get(reg).size();
+                                    }
                                 }
                             }
                             spilledRegs.put(toSpillReg, spillSize);
@@ -423,6 +458,7 @@ public class RegAllocatorForSingleFunc {
                     }
                 }
             } while (toContinueInner);
+            Set<VReg> oldVRegs = getVRegs();
             for (Map.Entry<VReg, Integer> toSpill : spilledRegs.entrySet()) {
                 VReg reg = toSpill.getKey();
                 int offset = toSpill.getValue();
@@ -436,6 +472,9 @@ public class RegAllocatorForSingleFunc {
                 func.getIrs().clear();
                 func.getIrs().addAll(newIRs);
             }
+            Set<VReg> newVRegs = getVRegs();
+            newVRegs.removeAll(oldVRegs);
+            spillTempRegs.addAll(newVRegs);
         } while (toContinueOuter);
     }
 
@@ -1,5 +1,6 @@
 package compile.llvm;
 
+import compile.llvm.ir.BranchInst;
 import compile.llvm.ir.Instruction;
 import compile.llvm.type.BasicType;
 import compile.llvm.value.Value;
@@ -21,6 +22,10 @@ public class BasicBlock extends Value implements Iterable<Instruction> {
         this.id = counter++;
     }
 
+    public Function getFunction() {
+        return function;
+    }
+
     public boolean isEmpty() {
         return instructions.isEmpty();
     }
@@ -30,10 +35,18 @@ public class BasicBlock extends Value implements Iterable<Instruction> {
     }
 
     public void add(Instruction inst) {
+        inst.setBlock(this);
         instructions.add(inst);
     }
 
+    public void add(int index, Instruction inst) {
+        inst.setBlock(this);
+        instructions.add(index, inst);
+    }
+
     public void addAll(int index, Collection<? extends Instruction> newInsts) {
+        for (Instruction inst : newInsts)
+            inst.setBlock(this);
         instructions.addAll(index, newInsts);
     }
 
@@ -41,6 +54,26 @@ public class BasicBlock extends Value implements Iterable<Instruction> {
         return instructions.remove(index);
     }
 
+    public boolean remove(Instruction inst) {
+        return instructions.remove(inst);
+    }
+
+    public int indexOf(Instruction inst) {
+        return instructions.indexOf(inst);
+    }
+
+    public List<BasicBlock> getSuccessors() {
+        if (instructions.isEmpty() || !(instructions.getLast() instanceof BranchInst branchInst))
+            return List.of();
+        if (!branchInst.isConditional())
+            return List.of(branchInst.getOperand(0));
+        BasicBlock ifTrue = branchInst.getOperand(1);
+        BasicBlock ifFalse = branchInst.getOperand(2);
+        if (ifTrue == ifFalse)
+            return List.of(ifTrue);
+        return List.of(ifTrue, ifFalse);
+    }
+
     public Instruction get(int index) {
         return instructions.get(index);
     }
@@ -49,6 +49,18 @@ public class Function extends Value implements Iterable<BasicBlock> {
         return blocks.getFirst();
     }
 
+    public BasicBlock getLast() {
+        return blocks.getLast();
+    }
+
+    public boolean remove(BasicBlock block) {
+        return blocks.remove(block);
+    }
+
+    public int indexOf(BasicBlock block) {
+        return blocks.indexOf(block);
+    }
+
     public void insertAfter(BasicBlock base, BasicBlock block) {
         int index = blocks.indexOf(base);
         blocks.add(index + 1, block);
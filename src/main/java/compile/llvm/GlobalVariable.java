@@ -13,7 +13,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class GlobalVariable extends User {
-    private final boolean isConst;
+    private boolean isConst;
     private final String name;
     private final Constant value;
 
@@ -28,6 +28,10 @@ public class GlobalVariable extends User {
         return isConst;
     }
 
+    public void setConst(boolean isConst) {
+        this.isConst = isConst;
+    }
+
     public List<Integer> getDimensions() {
         List<Integer> dimensions = new ArrayList<>();
         Type type = this.type;
@@ -62,21 +66,7 @@ public class GlobalVariable extends User {
     }
 
     public float getFloat(int index) {
-        List<Integer> dimensions = getDimensions();
-        Constant value = this.value;
-        for (int dimension : dimensions) {
-            switch (value) {
-                case ConstantArray constantArray -> {
-                    value = constantArray.getValues().get(index / dimension);
-                    index %= dimension;
-                }
-                case ConstantZero constantZero -> {
-                    return 0;
-                }
-                default -> throw new IllegalStateException("Unexpected value: " + value);
-            }
-        }
-        return ((ConstantNumber) value).floatValue();
+        return getElement(index).floatValue();
     }
 
     public int getInt() {
@@ -87,24 +77,19 @@ public class GlobalVariable extends User {
     }
 
     public int getInt(int index) {
-        List<Integer> dimensions = new ArrayList<>(getDimensions());
-        dimensions.removeFirst();
-        dimensions.add(1);
+        return getElement(index).intValue();
+    }
+
+    private ConstantNumber getElement(int index) {
         Constant value = this.value;
-        for (int i = 0; i < dimensions.size(); i++) {
-            int dimension = dimensions.get(i);
-            switch (value) {
-                case ConstantArray constantArray -> {
-                    value = constantArray.getValues().get(index / dimensions.stream().skip(i).reduce(1, Math::multiplyExact));
-                    index %= dimension;
-                }
-                case ConstantZero constantZero -> {
-                    return 0;
-                }
-                default -> throw new IllegalStateException("Unexpected value: " + value);
-            }
+        while (value instanceof ConstantArray constantArray) {
+            int size = ((ArrayType) constantArray.getType()).baseType().getSize() / 32;
+            value = constantArray.getValues().get(index / size);
+            index %= size;
         }
-        return ((ConstantNumber) value).intValue();
+        if (value instanceof ConstantZero)
+            return new ConstantNumber(0);
+        return (ConstantNumber) value;
     }
 
     public Constant getValue() {
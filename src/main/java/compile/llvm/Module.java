@@ -16,6 +16,14 @@ public class Module {
         functions.put(function.getName(), function);
     }
 
+    public void removeGlobal(GlobalVariable global) {
+        globals.remove(global.getName());
+    }
+
+    public void removeFunction(Function function) {
+        functions.remove(function.getName());
+    }
+
     public boolean hasGlobal() {
         return !globals.isEmpty();
     }
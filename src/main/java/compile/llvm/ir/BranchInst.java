@@ -2,6 +2,7 @@ package compile.llvm.ir;
 
 import compile.llvm.BasicBlock;
 import compile.llvm.type.BasicType;
+import compile.llvm.value.Use;
 import compile.llvm.value.Value;
 
 public class BranchInst extends Instruction {
@@ -13,6 +14,12 @@ public class BranchInst extends Instruction {
         super(block, BasicType.VOID, cond, ifTrue, ifFalse);
     }
 
+    public void replaceBlock(BasicBlock oldBlock, BasicBlock newBlock) {
+        for (int i = isConditional() ? 1 : 0; i < size(); i++)
+            if (getOperand(i) == oldBlock)
+                set(i, new Use(this, newBlock));
+    }
+
     public boolean isConditional() {
         return size() == 3;
     }
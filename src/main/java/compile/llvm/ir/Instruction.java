@@ -9,7 +9,7 @@ import compile.llvm.value.Value;
 public abstract class Instruction extends User {
     private static int counter = 0;
     protected final int id;
-    private final BasicBlock block;
+    private BasicBlock block;
 
     protected Instruction(BasicBlock block, Type type, Value... operands) {
         super(type);
@@ -19,6 +19,14 @@ public abstract class Instruction extends User {
         this.id = counter++;
     }
 
+    public BasicBlock getBlock() {
+        return block;
+    }
+
+    public void setBlock(BasicBlock block) {
+        this.block = block;
+    }
+
     @Override
     public int hashCode() {
         return id;
@@ -0,0 +1,64 @@
+package compile.llvm.ir;
+
+import compile.llvm.BasicBlock;
+import compile.llvm.type.Type;
+import compile.llvm.value.Use;
+import compile.llvm.value.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+public class PhiInst extends Instruction {
+    public PhiInst(BasicBlock block, Type type) {
+        super(block, type);
+    }
+
+    public void add(BasicBlock block, Value value) {
+        add(new Use(this, value));
+        add(new Use(this, block));
+    }
+
+    public List<BasicBlock> getBlocks() {
+        List<BasicBlock> blocks = new ArrayList<>();
+        for (int i = 1; i < size(); i += 2)
+            blocks.add(getOperand(i));
+        return blocks;
+    }
+
+    public Value getValue(BasicBlock block) {
+        for (int i = 1; i < size(); i += 2)
+            if (getOperand(i) == block)
+                return getOperand(i - 1);
+        return null;
+    }
+
+    public void setValue(BasicBlock block, Value value) {
+        for (int i = 1; i < size(); i += 2)
+            if (getOperand(i) == block)
+                set(i - 1, new Use(this, value));
+    }
+
+    public void replaceBlock(BasicBlock oldBlock, BasicBlock newBlock) {
+        for (int i = 1; i < size(); i += 2)
+            if (getOperand(i) == oldBlock)
+                set(i, new Use(this, newBlock));
+    }
+
+    public void removeBlock(BasicBlock block) {
+        for (int i = size() - 1; i > 0; i -= 2) {
+            if (getOperand(i) == block) {
+                remove(i);
+                remove(i - 1);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (int i = 0; i < size(); i += 2)
+            joiner.add(String.format("[ %s, %%%s ]", getOperand(i).getName(), getOperand(i + 1).getName()));
+        return String.format("%s = phi %s %s", getName(), type, joiner);
+    }
+}
@@ -0,0 +1,19 @@
+package compile.llvm.ir;
+
+import common.ObjectUtils;
+import compile.llvm.BasicBlock;
+import compile.llvm.value.Value;
+
+public class SelectInst extends Instruction {
+    public SelectInst(BasicBlock block, Value cond, Value trueValue, Value falseValue) {
+        super(block, ObjectUtils.checkEquality(trueValue.getType(), falseValue.getType()), cond, trueValue, falseValue);
+    }
+
+    @Override
+    public String toString() {
+        Value cond = getOperand(0);
+        Value trueValue = getOperand(1);
+        Value falseValue = getOperand(2);
+        return String.format("%s = select %s %s, %s %s, %s %s", getName(), cond.getType(), cond.getName(), type, trueValue.getName(), type, falseValue.getName());
+    }
+}
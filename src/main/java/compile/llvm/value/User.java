@@ -22,18 +22,26 @@ public abstract class User extends Value {
     }
 
     public Use remove(int index) {
-        return operands.remove(index);
+        Use use = operands.remove(index);
+        use.getValue().removeUse(use);
+        return use;
     }
 
     public Use remove(Value value) {
         for (int i = 0; i < operands.size(); i++) {
             if (operands.get(i).getValue() == value) {
-                return operands.remove(i);
+                return remove(i);
             }
         }
         return null;
     }
 
+    public void clear() {
+        for (Use use : operands)
+            use.getValue().removeUse(use);
+        operands.clear();
+    }
+
     public Use get(int index) {
         return operands.get(index);
     }
@@ -53,7 +61,9 @@ public abstract class User extends Value {
     public void set(int index, Use use) {
         while (operands.size() <= index)
             operands.add(null);
-        operands.set(index, use);
+        Use oldUse = operands.set(index, use);
+        if (oldUse != null)
+            oldUse.getValue().removeUse(oldUse);
         use.getValue().addUse(use);
     }
 
@@ -27,9 +27,18 @@ public abstract class Value {
         uses.add(use);
     }
 
+    public void removeUse(Use use) {
+        uses.remove(use);
+    }
+
     public void replaceAllUseAs(Value value) {
-        for (Use use : uses)
+        if (value == this)
+            return;
+        for (Use use : uses) {
             use.setValue(value);
+            value.addUse(use);
+        }
+        uses.clear();
     }
 
     public Set<Use> getUses() {
@@ -0,0 +1,145 @@
+package compile.opt;
+
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.ir.BranchInst;
+import compile.llvm.ir.Instruction;
+import compile.llvm.ir.PhiInst;
+import compile.opt.analysis.AnalysisManager;
+import compile.opt.analysis.DominatorTree;
+import compile.opt.analysis.PostDominatorTree;
+import compile.opt.analysis.SideEffectInfo;
+
+import java.util.*;
+
+public class ADCE implements FunctionPass {
+    private final AnalysisManager analysisManager;
+    private final Set<Instruction> liveInsts = new HashSet<>();
+    private final Set<BasicBlock> liveBlocks = new HashSet<>();
+    private final Deque<Instruction> worklist = new ArrayDeque<>();
+    private int removedCount = 0;
+
+    public ADCE(AnalysisManager analysisManager) {
+        this.analysisManager = analysisManager;
+    }
+
+    @Override
+    public String getName() {
+        return "adce";
+    }
+
+    @Override
+    public String getStatistics() {
+        return String.format("removed %d instructions", removedCount);
+    }
+
+    @Override
+    public boolean run(Function func) {
+        liveInsts.clear();
+        liveBlocks.clear();
+        PostDominatorTree postDomTree = analysisManager.getPostDomTree(func);
+        markRoots(func, postDomTree);
+        while (!worklist.isEmpty())
+            propagate(postDomTree, worklist.pop());
+        int oldRemovedCount = removedCount;
+        removeDeadInsts(func);
+        boolean cfgChanged = removeDeadBranches(func, postDomTree);
+        if (cfgChanged)
+            removeUnreachableBlocks(func);
+        return cfgChanged || removedCount != oldRemovedCount;
+    }
+
+    private void markRoots(Function func, PostDominatorTree postDomTree) {
+        SideEffectInfo sideEffectInfo = analysisManager.getSideEffectInfo();
+        for (BasicBlock block : func) {
+            for (Instruction inst : block) {
+                if (sideEffectInfo.hasSideEffect(inst))
+                    markLive(inst);
+                else if (inst instanceof BranchInst branchInst && isControlRoot(postDomTree, block, branchInst))
+                    markLive(inst);
+            }
+        }
+    }
+
+    private boolean isControlRoot(PostDominatorTree postDomTree, BasicBlock block, BranchInst branchInst) {
+        if (!postDomTree.isReachable(block))
+            return true;
+        if (!branchInst.isConditional())
+            return false;
+        if (postDomTree.getIdom(block) == null)
+            return true;
+        for (BasicBlock succ : block.getSuccessors())
+            if (!postDomTree.isReachable(succ))
+                return true;
+        return false;
+    }
+
+    private void markLive(Instruction inst) {
+        if (liveInsts.add(inst))
+            worklist.push(inst);
+    }
+
+    private void propagate(PostDominatorTree postDomTree, Instruction inst) {
+        markBlockLive(postDomTree, inst.getBlock());
+        for (int i = 0; i < inst.size(); i++)
+            if (inst.getOperand(i) instanceof Instruction operand)
+                markLive(operand);
+        if (inst instanceof PhiInst phiInst)
+            for (BasicBlock pred : phiInst.getBlocks())
+                markBlockLive(postDomTree, pred);
+    }
+
+    private void markBlockLive(PostDominatorTree postDomTree, BasicBlock block) {
+        if (!liveBlocks.add(block))
+            return;
+        if (!postDomTree.isReachable(block))
+            return;
+        for (BasicBlock controlBlock : postDomTree.getFrontier(block))
+            markLive(controlBlock.getLast());
+    }
+
+    private void removeDeadInsts(Function func) {
+        for (BasicBlock block : func) {
+            for (int i = 0; i < block.size(); i++) {
+                Instruction inst = block.get(i);
+                if (liveInsts.contains(inst) || inst instanceof BranchInst)
+                    continue;
+                block.remove(i--);
+                inst.clear();
+                removedCount++;
+            }
+        }
+    }
+
+    private boolean removeDeadBranches(Function func, PostDominatorTree postDomTree) {
+        boolean changed = false;
+        for (BasicBlock block : func) {
+            if (!(block.getLast() instanceof BranchInst branchInst) || liveInsts.contains(branchInst) || !branchInst.isConditional())
+                continue;
+            BasicBlock dest = postDomTree.getIdom(block);
+            for (BasicBlock succ : block.getSuccessors())
+                if (succ != dest)
+                    CFGUtils.removePhiBlock(succ, block);
+            block.remove(branchInst);
+            branchInst.clear();
+            block.add(new BranchInst(block, dest));
+            removedCount++;
+            changed = true;
+        }
+        return changed;
+    }
+
+    private void removeUnreachableBlocks(Function func) {
+        analysisManager.invalidateCFG(func);
+        DominatorTree domTree = analysisManager.getDomTree(func);
+        List<BasicBlock> unreachableBlocks = new ArrayList<>();
+        for (BasicBlock block : func)
+            if (!domTree.isReachable(block))
+                unreachableBlocks.add(block);
+        for (BasicBlock block : unreachableBlocks) {
+            removedCount += block.size();
+            CFGUtils.removeBlock(block);
+        }
+        analysisManager.invalidateCFG(func);
+    }
+}
@@ -0,0 +1,89 @@
+package compile.opt;
+
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.ir.BranchInst;
+import compile.llvm.ir.Instruction;
+import compile.llvm.ir.PhiInst;
+import compile.llvm.value.Value;
+import compile.opt.analysis.DominatorTree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class CFGUtils {
+    public static BasicBlock splitPreds(BasicBlock block, List<BasicBlock> preds) {
+        Function func = block.getFunction();
+        BasicBlock newBlock = new BasicBlock(func);
+        func.add(func.indexOf(block), newBlock);
+        for (BasicBlock pred : preds)
+            ((BranchInst) pred.getLast()).replaceBlock(block, newBlock);
+        for (Instruction inst : block) {
+            if (!(inst instanceof PhiInst phiInst))
+                break;
+            if (preds.size() == 1) {
+                phiInst.replaceBlock(preds.getFirst(), newBlock);
+                continue;
+            }
+            Value sameValue = phiInst.getValue(preds.getFirst());
+            for (BasicBlock pred : preds)
+                if (phiInst.getValue(pred) != sameValue)
+                    sameValue = null;
+            Value newValue = sameValue;
+            if (newValue == null) {
+                PhiInst newPhiInst = new PhiInst(newBlock, phiInst.getType());
+                for (BasicBlock pred : preds)
+                    newPhiInst.add(pred, phiInst.getValue(pred));
+                newBlock.add(newPhiInst);
+                newValue = newPhiInst;
+            }
+            for (BasicBlock pred : preds)
+                phiInst.removeBlock(pred);
+            phiInst.add(newBlock, newValue);
+        }
+        newBlock.add(new BranchInst(newBlock, block));
+        return newBlock;
+    }
+
+    public static BasicBlock splitBlock(BasicBlock block, int index) {
+        Function func = block.getFunction();
+        BasicBlock newBlock = new BasicBlock(func);
+        func.insertAfter(block, newBlock);
+        while (block.size() > index)
+            newBlock.add(block.remove(index));
+        for (BasicBlock succ : newBlock.getSuccessors()) {
+            for (Instruction inst : succ) {
+                if (!(inst instanceof PhiInst phiInst))
+                    break;
+                phiInst.replaceBlock(block, newBlock);
+            }
+        }
+        return newBlock;
+    }
+
+    public static int removeUnreachableBlocks(Function func, DominatorTree domTree) {
+        List<BasicBlock> unreachableBlocks = new ArrayList<>();
+        for (BasicBlock block : func)
+            if (!domTree.isReachable(block))
+                unreachableBlocks.add(block);
+        for (BasicBlock block : unreachableBlocks)
+            removeBlock(block);
+        return unreachableBlocks.size();
+    }
+
+    public static void removeBlock(BasicBlock block) {
+        for (BasicBlock succ : block.getSuccessors())
+            removePhiBlock(succ, block);
+        for (Instruction inst : block)
+            inst.clear();
+        block.getFunction().remove(block);
+    }
+
+    public static void removePhiBlock(BasicBlock block, BasicBlock pred) {
+        for (Instruction inst : block) {
+            if (!(inst instanceof PhiInst phiInst))
+                break;
+            phiInst.removeBlock(pred);
+        }
+    }
+}
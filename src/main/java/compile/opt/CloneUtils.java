@@ -0,0 +1,91 @@
+package compile.opt;
+
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.ir.*;
+import compile.llvm.value.Use;
+import compile.llvm.value.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public final class CloneUtils {
+    public static List<BasicBlock> cloneBlocks(List<BasicBlock> blocks, Map<Value, Value> valueMap) {
+        return cloneBlocks(blocks.getFirst().getFunction(), blocks, valueMap);
+    }
+
+    public static List<BasicBlock> cloneBlocks(Function func, List<BasicBlock> blocks, Map<Value, Value> valueMap) {
+        List<BasicBlock> newBlocks = new ArrayList<>();
+        for (BasicBlock block : blocks) {
+            BasicBlock newBlock = new BasicBlock(func);
+            valueMap.put(block, newBlock);
+            newBlocks.add(newBlock);
+        }
+        for (int i = 0; i < blocks.size(); i++)
+            for (Instruction inst : blocks.get(i))
+                newBlocks.get(i).add(cloneInst(newBlocks.get(i), inst, valueMap));
+        for (BasicBlock newBlock : newBlocks)
+            for (Instruction inst : newBlock)
+                remapOperands(inst, valueMap);
+        return newBlocks;
+    }
+
+    public static Instruction cloneInst(BasicBlock block, Instruction inst, Map<Value, Value> valueMap) {
+        Instruction newInst = switch (inst) {
+            case AllocaInst allocaInst -> new AllocaInst(block, allocaInst.getType().baseType());
+            case BinaryOperator binaryOperator ->
+                    new BinaryOperator(block, binaryOperator.op, map(binaryOperator.getOperand(0), valueMap), map(binaryOperator.getOperand(1), valueMap));
+            case BitCastInst bitCastInst -> new BitCastInst(block, bitCastInst.getType(), map(bitCastInst.getOperand(0), valueMap));
+            case BranchInst branchInst -> branchInst.isConditional() ?
+                    new BranchInst(block, map(branchInst.getOperand(0), valueMap), (BasicBlock) map(branchInst.getOperand(1), valueMap), (BasicBlock) map(branchInst.getOperand(2), valueMap)) :
+                    new BranchInst(block, (BasicBlock) map(branchInst.getOperand(0), valueMap));
+            case CallInst callInst -> {
+                List<Value> params = new ArrayList<>();
+                for (int i = 1; i < callInst.size(); i++)
+                    params.add(map(callInst.getOperand(i), valueMap));
+                yield new CallInst(block, callInst.getOperand(0), params);
+            }
+            case FCmpInst fCmpInst ->
+                    new FCmpInst(block, fCmpInst.getCond(), map(fCmpInst.getOperand(0), valueMap), map(fCmpInst.getOperand(1), valueMap));
+            case FPToSIInst fpToSIInst -> new FPToSIInst(block, fpToSIInst.getType(), map(fpToSIInst.getOperand(0), valueMap));
+            case GetElementPtrInst getElementPtrInst -> {
+                Value[] indexes = new Value[getElementPtrInst.size() - 1];
+                for (int i = 1; i < getElementPtrInst.size(); i++)
+                    indexes[i - 1] = map(getElementPtrInst.getOperand(i), valueMap);
+                yield new GetElementPtrInst(block, map(getElementPtrInst.getOperand(0), valueMap), indexes);
+            }
+            case ICmpInst iCmpInst ->
+                    new ICmpInst(block, iCmpInst.getCond(), map(iCmpInst.getOperand(0), valueMap), map(iCmpInst.getOperand(1), valueMap));
+            case LoadInst loadInst -> new LoadInst(block, map(loadInst.getOperand(0), valueMap));
+            case PhiInst phiInst -> {
+                PhiInst newPhiInst = new PhiInst(block, phiInst.getType());
+                for (int i = 0; i < phiInst.size(); i += 2)
+                    newPhiInst.add((BasicBlock) map(phiInst.getOperand(i + 1), valueMap), map(phiInst.getOperand(i), valueMap));
+                yield newPhiInst;
+            }
+            case RetInst retInst -> retInst.isEmpty() ? new RetInst(block) : new RetInst(block, map(retInst.getOperand(0), valueMap));
+            case SelectInst selectInst ->
+                    new SelectInst(block, map(selectInst.getOperand(0), valueMap), map(selectInst.getOperand(1), valueMap), map(selectInst.getOperand(2), valueMap));
+            case SExtInst sExtInst -> new SExtInst(block, sExtInst.getType(), map(sExtInst.getOperand(0), valueMap));
+            case SIToFPInst siToFPInst -> new SIToFPInst(block, siToFPInst.getType(), map(siToFPInst.getOperand(0), valueMap));
+            case StoreInst storeInst -> new StoreInst(block, map(storeInst.getOperand(0), valueMap), map(storeInst.getOperand(1), valueMap));
+            case ZExtInst zExtInst -> new ZExtInst(block, zExtInst.getType(), map(zExtInst.getOperand(0), valueMap));
+            default -> throw new IllegalStateException("Unexpected value: " + inst);
+        };
+        valueMap.put(inst, newInst);
+        return newInst;
+    }
+
+    public static void remapOperands(Instruction inst, Map<Value, Value> valueMap) {
+        for (int i = 0; i < inst.size(); i++) {
+            Value newValue = valueMap.get(inst.getOperand(i));
+            if (newValue != null)
+                inst.set(i, new Use(inst, newValue));
+        }
+    }
+
+    private static Value map(Value value, Map<Value, Value> valueMap) {
+        return valueMap.getOrDefault(value, value);
+    }
+}
@@ -0,0 +1,178 @@
+package compile.opt;
+
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.contant.ConstantNumber;
+import compile.llvm.ir.*;
+import compile.llvm.value.Use;
+import compile.llvm.value.User;
+import compile.llvm.value.Value;
+import compile.opt.analysis.AliasAnalysis;
+import compile.opt.analysis.AnalysisManager;
+import compile.opt.analysis.DominatorTree;
+import compile.opt.analysis.PostDominatorTree;
+import compile.opt.analysis.SideEffectInfo;
+
+import java.util.*;
+
+public class DeadStoreElimination implements FunctionPass {
+    private final AnalysisManager analysisManager;
+    private final Map<BasicBlock, DeadInfo> inInfos = new HashMap<>();
+    private final Set<AllocaInst> localAllocas = new HashSet<>();
+    private int removedNum;
+
+    public DeadStoreElimination(AnalysisManager analysisManager) {
+        this.analysisManager = analysisManager;
+    }
+
+    @Override
+    public String getName() {
+        return "dse";
+    }
+
+    @Override
+    public String getStatistics() {
+        return String.format("removed %d stores", removedNum);
+    }
+
+    @Override
+    public boolean run(Function func) {
+        calcLocalAllocas(func);
+        DominatorTree domTree = analysisManager.getDomTree(func);
+        PostDominatorTree postDomTree = analysisManager.getPostDomTree(func);
+        AliasAnalysis aliasAnalysis = analysisManager.getAliasAnalysis();
+        int oldRemovedNum = removedNum;
+        for (BasicBlock block : postDomTree.getReversePostOrder()) {
+            DeadInfo info = mergeSuccs(domTree, block);
+            for (int i = block.size() - 1; i >= 0; i--) {
+                Instruction inst = block.get(i);
+                switch (inst) {
+                    case StoreInst storeInst -> {
+                        Value pointer = storeInst.getOperand(1);
+                        if (info.isDead(pointer, aliasAnalysis)) {
+                            block.remove(i);
+                            storeInst.clear();
+                            removedNum++;
+                            continue;
+                        }
+                        info.pointers.add(pointer);
+                    }
+                    case LoadInst loadInst -> info.read(loadInst.getOperand(0), aliasAnalysis);
+                    case CallInst callInst when isMemset(callInst) -> {
+                        if (info.allocas.contains(SideEffectInfo.getBasePointer(callInst.getOperand(1)))) {
+                            block.remove(i);
+                            callInst.clear();
+                            removedNum++;
+                        }
+                    }
+                    case CallInst callInst ->
+                            info.pointers.removeIf(pointer -> aliasAnalysis.getModRef(callInst, pointer).isRef());
+                    default -> {
+                    }
+                }
+            }
+            inInfos.put(block, info);
+        }
+        for (BasicBlock block : func)
+            for (int i = 0; i < block.size(); i++)
+                if (block.get(i) instanceof CallInst callInst && isMemset(callInst) && isMemsetOverwritten(block, i, aliasAnalysis)) {
+                    block.remove(i--);
+                    callInst.clear();
+                    removedNum++;
+                }
+        inInfos.clear();
+        localAllocas.clear();
+        return removedNum != oldRemovedNum;
+    }
+
+    private void calcLocalAllocas(Function func) {
+        for (Instruction inst : func.getFirst())
+            if (inst instanceof AllocaInst allocaInst && !isEscaped(allocaInst))
+                localAllocas.add(allocaInst);
+    }
+
+    private boolean isEscaped(Value pointer) {
+        for (Use use : pointer.getUses()) {
+            User user = use.getUser();
+            boolean isEscaped = switch (user) {
+                case GetElementPtrInst getElementPtrInst -> getElementPtrInst.getOperand(0) != pointer || isEscaped(getElementPtrInst);
+                case BitCastInst bitCastInst -> isEscaped(bitCastInst);
+                case LoadInst loadInst -> false;
+                case StoreInst storeInst -> storeInst.getOperand(0) == pointer;
+                case CallInst callInst -> !isMemset(callInst);
+                default -> true;
+            };
+            if (isEscaped)
+                return true;
+        }
+        return false;
+    }
+
+    private boolean isMemset(CallInst callInst) {
+        Function callee = callInst.getOperand(0);
+        return callee.isDeclare() && callee.getRawName().equals("memset");
+    }
+
+    private DeadInfo mergeSuccs(DominatorTree domTree, BasicBlock block) {
+        List<BasicBlock> succs = block.getSuccessors();
+        if (succs.isEmpty())
+            return new DeadInfo(new HashSet<>(), new HashSet<>(localAllocas));
+        for (BasicBlock succ : succs)
+            if (!inInfos.containsKey(succ))
+                return new DeadInfo(new HashSet<>(), new HashSet<>());
+        DeadInfo info = new DeadInfo(new HashSet<>(inInfos.get(succs.getFirst()).pointers), new HashSet<>(inInfos.get(succs.getFirst()).allocas));
+        for (BasicBlock succ : succs) {
+            if (domTree.dominates(succ, block))
+                info.pointers.clear();
+            info.pointers.retainAll(inInfos.get(succ).pointers);
+            info.allocas.retainAll(inInfos.get(succ).allocas);
+        }
+        return info;
+    }
+
+    private boolean isMemsetOverwritten(BasicBlock block, int index, AliasAnalysis aliasAnalysis) {
+        CallInst memsetInst = (CallInst) block.get(index);
+        Value pointer = memsetInst.getOperand(1);
+        Value base = SideEffectInfo.getBasePointer(pointer);
+        Integer baseOffset = SideEffectInfo.getConstantOffset(pointer);
+        if (!AliasAnalysis.isIdentifiedObject(base) || baseOffset == null || !(memsetInst.getOperand(3) instanceof ConstantNumber size))
+            return false;
+        Set<Integer> unwritten = new HashSet<>();
+        for (int offset = 0; offset < size.intValue() * 8; offset += 32)
+            unwritten.add(baseOffset + offset);
+        for (int i = index + 1; i < block.size() && !unwritten.isEmpty(); i++) {
+            switch (block.get(i)) {
+                case StoreInst storeInst when SideEffectInfo.getBasePointer(storeInst.getOperand(1)) == base -> {
+                    Integer offset = SideEffectInfo.getConstantOffset(storeInst.getOperand(1));
+                    if (offset != null && storeInst.getOperand(0).getType().getSize() == 32)
+                        unwritten.remove(offset);
+                }
+                case LoadInst loadInst when aliasAnalysis.mayAlias(base, loadInst.getOperand(0)) -> {
+                    return false;
+                }
+                case CallInst callInst when aliasAnalysis.getModRef(callInst, pointer).isRef() -> {
+                    return false;
+                }
+                default -> {
+                }
+            }
+        }
+        return unwritten.isEmpty();
+    }
+
+    private record DeadInfo(Set<Value> pointers, Set<AllocaInst> allocas) {
+        private boolean isDead(Value pointer, AliasAnalysis aliasAnalysis) {
+            if (allocas.contains(SideEffectInfo.getBasePointer(pointer)))
+                return true;
+            for (Value deadPointer : pointers)
+                if (aliasAnalysis.alias(deadPointer, pointer) == AliasAnalysis.AliasResult.MUST_ALIAS)
+                    return true;
+            return false;
+        }
+
+        private void read(Value pointer, AliasAnalysis aliasAnalysis) {
+            pointers.removeIf(deadPointer -> aliasAnalysis.mayAlias(deadPointer, pointer));
+            allocas.remove(SideEffectInfo.getBasePointer(pointer));
+        }
+    }
+}
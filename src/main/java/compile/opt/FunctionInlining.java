@@ -0,0 +1,221 @@
+package compile.opt;
+
+import compile.llvm.Argument;
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.Module;
+import compile.llvm.contant.Constant;
+import compile.llvm.ir.*;
+import compile.llvm.type.BasicType;
+import compile.llvm.value.Value;
+import compile.opt.analysis.AnalysisManager;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.*;
+
+public class FunctionInlining implements ModulePass {
+    private static final int INLINE_THRESHOLD = 48;
+    private static final int SINGLE_CALL_THRESHOLD = 256;
+    private static final int LOOP_BONUS = 48;
+    private static final int CALL_COST = 8;
+    private static final int ARG_COST = 2;
+    private static final int CONSTANT_ARG_BONUS = 4;
+    private static final int MAX_CALLER_SIZE = 4096;
+    private final AnalysisManager analysisManager;
+    private final Map<Function, List<CallInst>> callSites = new HashMap<>();
+    private final Set<Function> recursiveFuncs = new HashSet<>();
+    private final List<Function> bottomUpOrder = new ArrayList<>();
+    private int inlinedNum;
+
+    public FunctionInlining(AnalysisManager analysisManager) {
+        this.analysisManager = analysisManager;
+    }
+
+    @Override
+    public String getName() {
+        return "inline";
+    }
+
+    @Override
+    public String getStatistics() {
+        return String.format("inlined %d call sites", inlinedNum);
+    }
+
+    @Override
+    public boolean run(Module module) {
+        buildCallGraph(module);
+        boolean changed = false;
+        for (Function caller : bottomUpOrder) {
+            for (CallInst callInst : new ArrayList<>(callSites.get(caller))) {
+                Function callee = callInst.getOperand(0);
+                if (callee.isDeclare() || callee == caller || recursiveFuncs.contains(caller) || recursiveFuncs.contains(callee))
+                    continue;
+                if (!shouldInline(caller, callee, callInst))
+                    continue;
+                callSites.get(caller).remove(callInst);
+                callSites.get(caller).addAll(inline(caller, callee, callInst));
+                inlinedNum++;
+                changed = true;
+            }
+        }
+        callSites.clear();
+        recursiveFuncs.clear();
+        bottomUpOrder.clear();
+        return changed;
+    }
+
+    private void buildCallGraph(Module module) {
+        for (Function func : module.getFunctions()) {
+            if (func.isDeclare())
+                continue;
+            List<CallInst> calls = new ArrayList<>();
+            for (BasicBlock block : func)
+                for (Instruction inst : block)
+                    if (inst instanceof CallInst callInst)
+                        calls.add(callInst);
+            callSites.put(func, calls);
+        }
+        Map<Function, Integer> indexes = new HashMap<>();
+        Map<Function, Integer> lowLinks = new HashMap<>();
+        Deque<Function> stack = new ArrayDeque<>();
+        Set<Function> onStack = new HashSet<>();
+        for (Function func : callSites.keySet())
+            if (!indexes.containsKey(func))
+                findSCCs(func, indexes, lowLinks, stack, onStack);
+    }
+
+    private void findSCCs(Function func, Map<Function, Integer> indexes, Map<Function, Integer> lowLinks, Deque<Function> stack, Set<Function> onStack) {
+        indexes.put(func, indexes.size());
+        lowLinks.put(func, indexes.get(func));
+        stack.push(func);
+        onStack.add(func);
+        boolean isSelfRecursive = false;
+        for (CallInst callInst : callSites.get(func)) {
+            Function callee = callInst.getOperand(0);
+            if (callee.isDeclare())
+                continue;
+            if (callee == func)
+                isSelfRecursive = true;
+            if (!indexes.containsKey(callee)) {
+                findSCCs(callee, indexes, lowLinks, stack, onStack);
+                lowLinks.put(func, Math.min(lowLinks.get(func), lowLinks.get(callee)));
+            } else if (onStack.contains(callee))
+                lowLinks.put(func, Math.min(lowLinks.get(func), indexes.get(callee)));
+        }
+        if (!lowLinks.get(func).equals(indexes.get(func)))
+            return;
+        List<Function> scc = new ArrayList<>();
+        Function member;
+        do {
+            member = stack.pop();
+            onStack.remove(member);
+            scc.add(member);
+        } while (member != func);
+        if (scc.size() > 1 || isSelfRecursive)
+            recursiveFuncs.addAll(scc);
+        bottomUpOrder.addAll(scc);
+    }
+
+    private boolean shouldInline(Function caller, Function callee, CallInst callInst) {
+        if (!hasReturn(callee))
+            return false;
+        int callerSize = calcSize(caller);
+        int calleeSize = calcSize(callee);
+        if (callerSize + calleeSize > MAX_CALLER_SIZE)
+            return false;
+        int cost = calleeSize - CALL_COST - ARG_COST * (callInst.size() - 1);
+        for (int i = 1; i < callInst.size(); i++)
+            if (callInst.getOperand(i) instanceof Constant)
+                cost -= CONSTANT_ARG_BONUS;
+        int threshold = INLINE_THRESHOLD;
+        if (analysisManager.getLoopInfo(caller).getLoopDepth(callInst.getBlock()) > 0)
+            threshold += LOOP_BONUS;
+        if (countCallSites(callee) == 1)
+            threshold = Math.max(threshold, SINGLE_CALL_THRESHOLD);
+        return cost <= threshold;
+    }
+
+    private boolean hasReturn(Function func) {
+        for (BasicBlock block : func)
+            if (block.getLast() instanceof RetInst)
+                return true;
+        return false;
+    }
+
+    private int calcSize(Function func) {
+        int size = 0;
+        for (BasicBlock block : func)
+            size += block.size();
+        return size;
+    }
+
+    private int countCallSites(Function callee) {
+        int count = 0;
+        for (List<CallInst> calls : callSites.values())
+            for (CallInst callInst : calls)
+                if (callInst.getOperand(0) == callee)
+                    count++;
+        return count;
+    }
+
+    private List<CallInst> inline(Function caller, Function callee, CallInst callInst) {
+        BasicBlock block = callInst.getBlock();
+        BasicBlock nextBlock = CFGUtils.splitBlock(block, block.indexOf(callInst) + 1);
+        Map<Value, Value> valueMap = new HashMap<>();
+        for (int i = 0; i < callee.getArgs().size(); i++) {
+            Argument arg = callee.getArgs().get(i);
+            Value param = callInst.getOperand(i + 1);
+            if (!param.getType().equals(arg.getType())) {
+                param = new BitCastInst(block, arg.getType(), param);
+                block.add(block.indexOf(callInst), (Instruction) param);
+            }
+            valueMap.put(arg, param);
+        }
+        List<BasicBlock> calleeBlocks = new ArrayList<>();
+        callee.forEach(calleeBlocks::add);
+        List<BasicBlock> newBlocks = CloneUtils.cloneBlocks(caller, calleeBlocks, valueMap);
+        BasicBlock entryBlock = caller.getFirst();
+        List<Pair<BasicBlock, Value>> retValues = new ArrayList<>();
+        List<CallInst> newCallInsts = new ArrayList<>();
+        for (BasicBlock newBlock : newBlocks) {
+            for (int i = 0; i < newBlock.size(); i++) {
+                Instruction inst = newBlock.get(i);
+                switch (inst) {
+                    case CallInst newCallInst -> newCallInsts.add(newCallInst);
+                    case AllocaInst allocaInst -> {
+                        newBlock.remove(i--);
+                        entryBlock.add(0, allocaInst);
+                    }
+                    case RetInst retInst -> {
+                        if (!retInst.isEmpty())
+                            retValues.add(Pair.of(newBlock, retInst.getOperand(0)));
+                        newBlock.remove(i);
+                        retInst.clear();
+                        newBlock.add(i, new BranchInst(newBlock, nextBlock));
+                    }
+                    default -> {
+                    }
+                }
+            }
+        }
+        caller.add(caller.indexOf(nextBlock), newBlocks);
+        if (callee.getType() != BasicType.VOID) {
+            Value retVal;
+            if (retValues.size() == 1)
+                retVal = retValues.getFirst().getRight();
+            else {
+                PhiInst phiInst = new PhiInst(nextBlock, callee.getType());
+                for (Pair<BasicBlock, Value> retValue : retValues)
+                    phiInst.add(retValue.getLeft(), retValue.getRight());
+                nextBlock.add(0, phiInst);
+                retVal = phiInst;
+            }
+            callInst.replaceAllUseAs(retVal);
+        }
+        block.remove(callInst);
+        callInst.clear();
+        block.add(new BranchInst(block, newBlocks.getFirst()));
+        analysisManager.invalidateCFG(caller);
+        return newCallInsts;
+    }
+}
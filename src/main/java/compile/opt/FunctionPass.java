@@ -0,0 +1,7 @@
+package compile.opt;
+
+import compile.llvm.Function;
+
+public interface FunctionPass extends Pass {
+    boolean run(Function func);
+}
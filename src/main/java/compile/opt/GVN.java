@@ -0,0 +1,129 @@
+package compile.opt;
+
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.contant.ConstantNumber;
+import compile.llvm.ir.*;
+import compile.llvm.value.Value;
+import compile.opt.analysis.AnalysisManager;
+import compile.opt.analysis.DominatorTree;
+
+import java.util.*;
+
+public class GVN implements FunctionPass {
+    private final AnalysisManager analysisManager;
+    private final Map<List<Object>, Instruction> leaders = new HashMap<>();
+    private int removedNum;
+
+    public GVN(AnalysisManager analysisManager) {
+        this.analysisManager = analysisManager;
+    }
+
+    @Override
+    public String getName() {
+        return "gvn";
+    }
+
+    @Override
+    public String getStatistics() {
+        return String.format("removed %d redundant instructions", removedNum);
+    }
+
+    @Override
+    public boolean run(Function func) {
+        leaders.clear();
+        int oldRemovedNum = removedNum;
+        DominatorTree domTree = analysisManager.getDomTree(func);
+        visit(domTree, func.getFirst());
+        return removedNum != oldRemovedNum;
+    }
+
+    private void visit(DominatorTree domTree, BasicBlock block) {
+        List<List<Object>> newKeys = new ArrayList<>();
+        for (int i = 0; i < block.size(); i++) {
+            Instruction inst = block.get(i);
+            List<Object> key = makeKey(inst);
+            if (key == null)
+                continue;
+            Instruction leader = leaders.get(key);
+            if (leader == null) {
+                leaders.put(key, inst);
+                newKeys.add(key);
+                continue;
+            }
+            inst.replaceAllUseAs(leader);
+            block.remove(i--);
+            inst.clear();
+            removedNum++;
+        }
+        for (BasicBlock child : domTree.getChildren(block))
+            visit(domTree, child);
+        for (List<Object> key : newKeys)
+            leaders.remove(key);
+    }
+
+    private List<Object> makeKey(Instruction inst) {
+        List<Object> key = new ArrayList<>();
+        key.add(inst.getClass());
+        key.add(inst.getType().toString());
+        switch (inst) {
+            case BinaryOperator binaryOperator -> {
+                key.add(binaryOperator.op);
+                Object operand1 = getOperandKey(binaryOperator.getOperand(0));
+                Object operand2 = getOperandKey(binaryOperator.getOperand(1));
+                boolean isCommutative = switch (binaryOperator.op) {
+                    case ADD, FADD, MUL, FMUL, XOR -> true;
+                    default -> false;
+                };
+                if (isCommutative && operand1.hashCode() > operand2.hashCode()) {
+                    Object temp = operand1;
+                    operand1 = operand2;
+                    operand2 = temp;
+                }
+                key.add(operand1);
+                key.add(operand2);
+            }
+            case CmpInst cmpInst -> {
+                CmpInst.Cond cond = cmpInst.getCond();
+                Object operand1 = getOperandKey(cmpInst.getOperand(0));
+                Object operand2 = getOperandKey(cmpInst.getOperand(1));
+                CmpInst.Cond swappedCond = switch (cond) {
+                    case SGT -> CmpInst.Cond.SLT;
+                    case SGE -> CmpInst.Cond.SLE;
+                    case OGT -> CmpInst.Cond.OLT;
+                    case OGE -> CmpInst.Cond.OLE;
+                    case EQ, NE, OEQ, UNE -> operand1.hashCode() > operand2.hashCode() ? cond : null;
+                    default -> null;
+                };
+                if (swappedCond != null) {
+                    Object temp = operand1;
+                    operand1 = operand2;
+                    operand2 = temp;
+                    cond = swappedCond;
+                }
+                key.add(cond);
+                key.add(operand1);
+                key.add(operand2);
+            }
+            case GetElementPtrInst getElementPtrInst -> {
+                for (int i = 0; i < getElementPtrInst.size(); i++)
+                    key.add(getOperandKey(getElementPtrInst.getOperand(i)));
+            }
+            case CastInst castInst -> key.add(getOperandKey(castInst.getOperand(0)));
+            case SelectInst selectInst -> {
+                for (int i = 0; i < selectInst.size(); i++)
+                    key.add(getOperandKey(selectInst.getOperand(i)));
+            }
+            default -> {
+                return null;
+            }
+        }
+        return key;
+    }
+
+    private Object getOperandKey(Value value) {
+        if (value instanceof ConstantNumber number)
+            return number.toString();
+        return value;
+    }
+}
@@ -0,0 +1,93 @@
+package compile.opt;
+
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.GlobalVariable;
+import compile.llvm.Module;
+import compile.llvm.contant.ConstantNumber;
+import compile.llvm.ir.CallInst;
+import compile.llvm.ir.Instruction;
+import compile.llvm.ir.LoadInst;
+import compile.llvm.ir.StoreInst;
+import compile.llvm.type.BasicType;
+import compile.llvm.value.Value;
+import compile.opt.analysis.SideEffectInfo;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class GlobalConstantPromotion implements ModulePass {
+    private int promotedNum;
+    private int foldedNum;
+
+    @Override
+    public String getName() {
+        return "global-const";
+    }
+
+    @Override
+    public String getStatistics() {
+        return String.format("promoted %d globals, folded %d loads", promotedNum, foldedNum);
+    }
+
+    @Override
+    public boolean run(Module module) {
+        Set<GlobalVariable> writtenGlobals = new HashSet<>();
+        for (Function func : module.getFunctions()) {
+            for (BasicBlock block : func) {
+                for (Instruction inst : block) {
+                    switch (inst) {
+                        case StoreInst storeInst -> {
+                            if (SideEffectInfo.getBasePointer(storeInst.getOperand(1)) instanceof GlobalVariable global)
+                                writtenGlobals.add(global);
+                        }
+                        case CallInst callInst -> {
+                            for (int i = 1; i < callInst.size(); i++)
+                                if (SideEffectInfo.getBasePointer(callInst.getOperand(i)) instanceof GlobalVariable global)
+                                    writtenGlobals.add(global);
+                        }
+                        default -> {
+                        }
+                    }
+                }
+            }
+        }
+        boolean changed = false;
+        for (GlobalVariable global : module.getGlobals()) {
+            if (global.isConst() || writtenGlobals.contains(global))
+                continue;
+            global.setConst(true);
+            promotedNum++;
+            changed = true;
+        }
+        for (Function func : module.getFunctions())
+            for (BasicBlock block : func)
+                changed |= foldLoads(block);
+        return changed;
+    }
+
+    private boolean foldLoads(BasicBlock block) {
+        boolean changed = false;
+        for (int i = 0; i < block.size(); i++) {
+            if (!(block.get(i) instanceof LoadInst loadInst))
+                continue;
+            Value pointer = loadInst.getOperand(0);
+            if (!(SideEffectInfo.getBasePointer(pointer) instanceof GlobalVariable global) || !global.isConst())
+                continue;
+            Integer offset = SideEffectInfo.getConstantOffset(pointer);
+            if (offset == null || offset < 0 || offset >= global.getType().getSize() || offset % 32 != 0)
+                continue;
+            ConstantNumber value = switch (loadInst.getType()) {
+                case BasicType.I32 -> new ConstantNumber(global.getInt(offset / 32));
+                case BasicType.FLOAT -> new ConstantNumber(global.getFloat(offset / 32));
+                default -> throw new IllegalStateException("Unexpected value: " + loadInst.getType());
+            };
+            loadInst.replaceAllUseAs(value);
+            block.remove(i--);
+            loadInst.clear();
+            foldedNum++;
+            changed = true;
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,154 @@
+package compile.opt;
+
+import compile.llvm.Argument;
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.GlobalVariable;
+import compile.llvm.Module;
+import compile.llvm.contant.ConstantNumber;
+import compile.llvm.ir.*;
+import compile.llvm.type.BasicType;
+import compile.llvm.value.Use;
+import compile.llvm.value.Value;
+
+import java.util.*;
+
+public class GlobalDCE implements ModulePass {
+    private int removedFuncNum;
+    private int removedGlobalNum;
+    private int removedArgNum;
+
+    @Override
+    public String getName() {
+        return "globaldce";
+    }
+
+    @Override
+    public String getStatistics() {
+        return String.format("removed %d functions, %d globals, %d arguments", removedFuncNum, removedGlobalNum, removedArgNum);
+    }
+
+    @Override
+    public boolean run(Module module) {
+        Function main = module.getFunction("@main");
+        if (main == null)
+            return false;
+        Map<Function, List<CallInst>> callSites = findCallSites(main);
+        boolean changed = removeDeadFuncs(module, callSites.keySet());
+        for (Map.Entry<Function, List<CallInst>> entry : callSites.entrySet()) {
+            Function func = entry.getKey();
+            if (func == main || func.isDeclare())
+                continue;
+            changed |= removeDeadRetVal(func, entry.getValue());
+            changed |= removeDeadArgs(func, entry.getValue());
+        }
+        changed |= removeDeadGlobals(module);
+        return changed;
+    }
+
+    private Map<Function, List<CallInst>> findCallSites(Function main) {
+        Map<Function, List<CallInst>> callSites = new HashMap<>();
+        callSites.put(main, new ArrayList<>());
+        Deque<Function> worklist = new ArrayDeque<>();
+        worklist.push(main);
+        while (!worklist.isEmpty()) {
+            Function func = worklist.pop();
+            for (BasicBlock block : func) {
+                for (Instruction inst : block) {
+                    if (!(inst instanceof CallInst callInst))
+                        continue;
+                    Function callee = callInst.getOperand(0);
+                    if (!callSites.containsKey(callee)) {
+                        callSites.put(callee, new ArrayList<>());
+                        worklist.push(callee);
+                    }
+                    callSites.get(callee).add(callInst);
+                }
+            }
+        }
+        return callSites;
+    }
+
+    private boolean removeDeadFuncs(Module module, Set<Function> liveFuncs) {
+        boolean changed = false;
+        for (Function func : new ArrayList<>(module.getFunctions())) {
+            if (liveFuncs.contains(func))
+                continue;
+            for (BasicBlock block : func)
+                for (Instruction inst : block)
+                    inst.clear();
+            module.removeFunction(func);
+            if (!func.isDeclare())
+                removedFuncNum++;
+            changed = true;
+        }
+        return changed;
+    }
+
+    private boolean removeDeadArgs(Function func, List<CallInst> callInsts) {
+        boolean changed = false;
+        List<Argument> args = func.getArgs();
+        for (int i = args.size() - 1; i >= 0; i--) {
+            if (!args.get(i).getUses().isEmpty())
+                continue;
+            args.remove(i);
+            for (CallInst callInst : callInsts)
+                callInst.remove(i + 1);
+            removedArgNum++;
+            changed = true;
+        }
+        return changed;
+    }
+
+    private boolean removeDeadRetVal(Function func, List<CallInst> callInsts) {
+        if (func.getType() == BasicType.VOID)
+            return false;
+        for (CallInst callInst : callInsts)
+            if (!callInst.getUses().isEmpty())
+                return false;
+        ConstantNumber zero = new ConstantNumber(func.getType() == BasicType.FLOAT ? (Number) 0.0f : (Number) 0);
+        boolean changed = false;
+        for (BasicBlock block : func) {
+            if (!(block.getLast() instanceof RetInst retInst) || retInst.getOperand(0) instanceof ConstantNumber)
+                continue;
+            Value retVal = retInst.getOperand(0);
+            retInst.set(0, new Use(retInst, zero));
+            eraseIfDead(retVal);
+            changed = true;
+        }
+        return changed;
+    }
+
+    private void eraseIfDead(Value value) {
+        if (!(value instanceof Instruction inst) || !inst.getUses().isEmpty())
+            return;
+        if (inst instanceof CallInst || inst instanceof StoreInst || inst instanceof BranchInst || inst instanceof RetInst)
+            return;
+        List<Value> operands = new ArrayList<>();
+        for (int i = 0; i < inst.size(); i++)
+            operands.add(inst.getOperand(i));
+        inst.getBlock().remove(inst);
+        inst.clear();
+        for (Value operand : operands)
+            eraseIfDead(operand);
+    }
+
+    private boolean removeDeadGlobals(Module module) {
+        Set<GlobalVariable> liveGlobals = new HashSet<>();
+        for (Function func : module.getFunctions())
+            for (BasicBlock block : func)
+                for (Instruction inst : block)
+                    for (int i = 0; i < inst.size(); i++)
+                        if (inst.getOperand(i) instanceof GlobalVariable global)
+                            liveGlobals.add(global);
+        boolean changed = false;
+        for (GlobalVariable global : new ArrayList<>(module.getGlobals())) {
+            if (liveGlobals.contains(global))
+                continue;
+            module.removeGlobal(global);
+            removedGlobalNum++;
+            changed = true;
+        }
+        return changed;
+    }
+}
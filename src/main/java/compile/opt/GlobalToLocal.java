@@ -0,0 +1,165 @@
+package compile.opt;
+
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.GlobalVariable;
+import compile.llvm.Module;
+import compile.llvm.ir.*;
+import compile.llvm.value.Use;
+import compile.opt.analysis.AnalysisManager;
+import compile.opt.analysis.LoopInfo;
+
+import java.util.*;
+
+public class GlobalToLocal implements ModulePass {
+    private static final int LOOP_WEIGHT = 10;
+    private final AnalysisManager analysisManager;
+    private final Mem2Reg mem2Reg;
+    private final Map<Function, Set<GlobalVariable>> readGlobals = new HashMap<>();
+    private final Map<Function, Set<GlobalVariable>> writtenGlobals = new HashMap<>();
+    private int promotedNum;
+
+    public GlobalToLocal(AnalysisManager analysisManager) {
+        this.analysisManager = analysisManager;
+        this.mem2Reg = new Mem2Reg(analysisManager);
+    }
+
+    @Override
+    public String getName() {
+        return "global2local";
+    }
+
+    @Override
+    public String getStatistics() {
+        return String.format("promoted %d globals", promotedNum);
+    }
+
+    @Override
+    public boolean run(Module module) {
+        calcAccessedGlobals(module);
+        boolean changed = false;
+        for (Function func : module.getFunctions()) {
+            if (func.isDeclare())
+                continue;
+            boolean isPromoted = false;
+            Set<GlobalVariable> globals = new LinkedHashSet<>(readGlobals.get(func));
+            globals.addAll(writtenGlobals.get(func));
+            for (GlobalVariable global : globals) {
+                if (!global.isSingle() || global.isConst() || !isProfitable(func, global))
+                    continue;
+                promote(func, global);
+                promotedNum++;
+                isPromoted = true;
+            }
+            if (isPromoted) {
+                mem2Reg.run(func);
+                changed = true;
+            }
+        }
+        readGlobals.clear();
+        writtenGlobals.clear();
+        return changed;
+    }
+
+    private void calcAccessedGlobals(Module module) {
+        Map<Function, Set<Function>> calleeMap = new HashMap<>();
+        for (Function func : module.getFunctions()) {
+            Set<GlobalVariable> reads = new HashSet<>();
+            Set<GlobalVariable> writes = new HashSet<>();
+            Set<Function> callees = new HashSet<>();
+            for (BasicBlock block : func) {
+                for (Instruction inst : block) {
+                    switch (inst) {
+                        case LoadInst loadInst when loadInst.getOperand(0) instanceof GlobalVariable global ->
+                                reads.add(global);
+                        case StoreInst storeInst when storeInst.getOperand(1) instanceof GlobalVariable global ->
+                                writes.add(global);
+                        case CallInst callInst -> callees.add(callInst.getOperand(0));
+                        default -> {
+                        }
+                    }
+                }
+            }
+            readGlobals.put(func, reads);
+            writtenGlobals.put(func, writes);
+            calleeMap.put(func, callees);
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<Function, Set<Function>> entry : calleeMap.entrySet()) {
+                Function func = entry.getKey();
+                for (Function callee : entry.getValue()) {
+                    changed |= readGlobals.get(func).addAll(readGlobals.get(callee));
+                    changed |= writtenGlobals.get(func).addAll(writtenGlobals.get(callee));
+                }
+            }
+        }
+    }
+
+    private boolean mayAccess(Function func, GlobalVariable global) {
+        return readGlobals.get(func).contains(global) || writtenGlobals.get(func).contains(global);
+    }
+
+    private boolean isProfitable(Function func, GlobalVariable global) {
+        LoopInfo loopInfo = analysisManager.getLoopInfo(func);
+        int benefit = 0;
+        int cost = 2;
+        for (BasicBlock block : func) {
+            int weight = (int) Math.pow(LOOP_WEIGHT, Math.min(loopInfo.getLoopDepth(block), 4));
+            for (Instruction inst : block) {
+                switch (inst) {
+                    case LoadInst loadInst when loadInst.getOperand(0) == global -> benefit += weight;
+                    case StoreInst storeInst when storeInst.getOperand(1) == global -> benefit += weight;
+                    case CallInst callInst when mayAccess(callInst.getOperand(0), global) -> cost += 2 * weight;
+                    case RetInst retInst -> cost++;
+                    default -> {
+                    }
+                }
+            }
+        }
+        return benefit > cost;
+    }
+
+    private void promote(Function func, GlobalVariable global) {
+        BasicBlock entryBlock = func.getFirst();
+        AllocaInst allocaInst = new AllocaInst(entryBlock, global.getType());
+        entryBlock.add(0, allocaInst);
+        boolean isMain = func.getRawName().equals("main");
+        for (BasicBlock block : func) {
+            for (int i = 0; i < block.size(); i++) {
+                switch (block.get(i)) {
+                    case LoadInst loadInst when loadInst.getOperand(0) == global ->
+                            loadInst.set(0, new Use(loadInst, allocaInst));
+                    case StoreInst storeInst when storeInst.getOperand(1) == global ->
+                            storeInst.set(1, new Use(storeInst, allocaInst));
+                    case CallInst callInst when mayAccess(callInst.getOperand(0), global) -> {
+                        i += writeBack(block, i, allocaInst, global);
+                        if (writtenGlobals.get(callInst.<Function>getOperand(0)).contains(global)) {
+                            LoadInst reloadInst = new LoadInst(block, global);
+                            block.add(i + 1, reloadInst);
+                            block.add(i + 2, new StoreInst(block, reloadInst, allocaInst));
+                            i += 2;
+                        }
+                    }
+                    case RetInst retInst when !isMain -> i += writeBack(block, i, allocaInst, global);
+                    default -> {
+                    }
+                }
+            }
+        }
+        int index = 0;
+        while (entryBlock.get(index) instanceof AllocaInst)
+            index++;
+        LoadInst initLoad = new LoadInst(entryBlock, global);
+        entryBlock.add(index, initLoad);
+        entryBlock.add(index + 1, new StoreInst(entryBlock, initLoad, allocaInst));
+    }
+
+    private int writeBack(BasicBlock block, int index, AllocaInst allocaInst, GlobalVariable global) {
+        LoadInst loadInst = new LoadInst(block, allocaInst);
+        block.add(index, loadInst);
+        block.add(index + 1, new StoreInst(block, loadInst, global));
+        return 2;
+    }
+}
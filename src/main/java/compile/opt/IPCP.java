@@ -0,0 +1,205 @@
+package compile.opt;
+
+import compile.llvm.Argument;
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.Module;
+import compile.llvm.contant.ConstantNumber;
+import compile.llvm.ir.*;
+import compile.llvm.value.Use;
+import compile.llvm.value.Value;
+import compile.opt.analysis.AnalysisManager;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.*;
+
+public class IPCP implements ModulePass {
+    private static final int MAX_SPECIALIZED_SIZE = 256;
+    private static final int MAX_SPECIALIZATION_NUM = 4;
+    private static final int MAX_GROWTH = 1024;
+    private final AnalysisManager analysisManager;
+    private final Map<Function, List<CallInst>> callSites = new HashMap<>();
+    private int propagatedNum;
+    private int specializedNum;
+
+    public IPCP(AnalysisManager analysisManager) {
+        this.analysisManager = analysisManager;
+    }
+
+    @Override
+    public String getName() {
+        return "ipcp";
+    }
+
+    @Override
+    public String getStatistics() {
+        return String.format("propagated %d arguments, specialized %d functions", propagatedNum, specializedNum);
+    }
+
+    @Override
+    public boolean run(Module module) {
+        findCallSites(module);
+        boolean changed = propagate();
+        changed |= specialize(module);
+        callSites.clear();
+        return changed;
+    }
+
+    private void findCallSites(Module module) {
+        for (Function func : module.getFunctions())
+            if (!func.isDeclare() && !func.getRawName().equals("main"))
+                callSites.put(func, new ArrayList<>());
+        for (Function func : module.getFunctions())
+            for (BasicBlock block : func)
+                for (Instruction inst : block)
+                    if (inst instanceof CallInst callInst && callSites.containsKey((Function) callInst.getOperand(0)))
+                        callSites.get((Function) callInst.getOperand(0)).add(callInst);
+    }
+
+    private boolean propagate() {
+        boolean changed = false;
+        boolean toContinue = true;
+        while (toContinue) {
+            toContinue = false;
+            for (Map.Entry<Function, List<CallInst>> entry : callSites.entrySet()) {
+                Function func = entry.getKey();
+                List<Argument> args = func.getArgs();
+                for (int i = 0; i < args.size(); i++) {
+                    Argument arg = args.get(i);
+                    if (arg.getUses().isEmpty())
+                        continue;
+                    ConstantNumber number = findCommonConstant(func, arg, i + 1, entry.getValue());
+                    if (number == null)
+                        continue;
+                    arg.replaceAllUseAs(number);
+                    propagatedNum++;
+                    toContinue = true;
+                }
+            }
+            changed |= toContinue;
+        }
+        return changed;
+    }
+
+    private ConstantNumber findCommonConstant(Function func, Argument arg, int index, List<CallInst> callInsts) {
+        ConstantNumber result = null;
+        for (CallInst callInst : callInsts) {
+            Value param = callInst.getOperand(index);
+            if (param == arg && callInst.getBlock().getFunction() == func)
+                continue;
+            if (!(param instanceof ConstantNumber number) || !number.getType().equals(arg.getType()))
+                return null;
+            if (result != null && !result.equals(number))
+                return null;
+            result = number;
+        }
+        return result;
+    }
+
+    private boolean specialize(Module module) {
+        List<Specialization> candidates = new ArrayList<>();
+        for (Map.Entry<Function, List<CallInst>> entry : callSites.entrySet()) {
+            Function func = entry.getKey();
+            if (calcSize(func) > MAX_SPECIALIZED_SIZE)
+                continue;
+            Map<List<Pair<Integer, ConstantNumber>>, List<CallInst>> groups = new HashMap<>();
+            for (CallInst callInst : entry.getValue()) {
+                if (callInst.getBlock().getFunction() == func)
+                    continue;
+                List<Pair<Integer, ConstantNumber>> key = new ArrayList<>();
+                for (int i = 0; i < func.getArgs().size(); i++)
+                    if (callInst.getOperand(i + 1) instanceof ConstantNumber number && number.getType().equals(func.getArgs().get(i).getType()) && isSpecializable(func, i))
+                        key.add(Pair.of(i, number));
+                if (!key.isEmpty())
+                    groups.computeIfAbsent(key, k -> new ArrayList<>()).add(callInst);
+            }
+            for (Map.Entry<List<Pair<Integer, ConstantNumber>>, List<CallInst>> group : groups.entrySet())
+                candidates.add(new Specialization(func, group.getKey(), group.getValue(), calcWeight(group.getValue())));
+        }
+        candidates.sort(Comparator.comparingInt(Specialization::weight).reversed());
+        Map<Function, Integer> specializationNums = new HashMap<>();
+        int budget = MAX_GROWTH;
+        for (Specialization specialization : candidates) {
+            Function func = specialization.func;
+            int size = calcSize(func);
+            int num = specializationNums.getOrDefault(func, 0);
+            if (size > budget || num >= MAX_SPECIALIZATION_NUM)
+                continue;
+            Function newFunc = createSpecialization(module, specialization, num);
+            for (CallInst callInst : specialization.callInsts)
+                callInst.set(0, new Use(callInst, newFunc));
+            specializationNums.put(func, num + 1);
+            budget -= size;
+            specializedNum++;
+        }
+        return !specializationNums.isEmpty();
+    }
+
+    private int calcWeight(List<CallInst> callInsts) {
+        int weight = 0;
+        for (CallInst callInst : callInsts) {
+            BasicBlock block = callInst.getBlock();
+            weight += (int) Math.pow(10, Integer.min(analysisManager.getLoopInfo(block.getFunction()).getLoopDepth(block), 4));
+        }
+        return weight;
+    }
+
+    private boolean isSpecializable(Function func, int index) {
+        Argument arg = func.getArgs().get(index);
+        for (CallInst callInst : callSites.get(func))
+            if (callInst.getBlock().getFunction() == func && callInst.getOperand(index + 1) != arg)
+                return false;
+        for (Use use : arg.getUses()) {
+            boolean isSpecializable = switch (use.getUser()) {
+                case CmpInst cmpInst -> true;
+                case BinaryOperator binaryOperator -> switch (binaryOperator.op) {
+                    case MUL, SDIV, SREM -> true;
+                    default -> false;
+                };
+                default -> false;
+            };
+            if (isSpecializable)
+                return true;
+        }
+        return false;
+    }
+
+    private int calcSize(Function func) {
+        int size = 0;
+        for (BasicBlock block : func)
+            size += block.size();
+        return size;
+    }
+
+    private Function createSpecialization(Module module, Specialization specialization, int num) {
+        Function func = specialization.func;
+        Function newFunc = new Function(func.getType(), String.format("__spec_%s_%d", func.getRawName(), num));
+        Map<Value, Value> valueMap = new HashMap<>();
+        for (Argument arg : func.getArgs()) {
+            Argument newArg = new Argument(arg.getType(), arg.getName().substring(1));
+            newFunc.addArg(newArg);
+            valueMap.put(arg, newArg);
+        }
+        for (Pair<Integer, ConstantNumber> pair : specialization.key)
+            valueMap.put(func.getArgs().get(pair.getLeft()), pair.getRight());
+        List<BasicBlock> blocks = new ArrayList<>();
+        func.forEach(blocks::add);
+        newFunc.add(0, CloneUtils.cloneBlocks(newFunc, blocks, valueMap));
+        for (BasicBlock block : newFunc) {
+            for (Instruction inst : block) {
+                if (!(inst instanceof CallInst callInst) || callInst.getOperand(0) != func)
+                    continue;
+                boolean isSame = true;
+                for (Pair<Integer, ConstantNumber> pair : specialization.key)
+                    isSame &= pair.getRight().equals(callInst.getOperand(pair.getLeft() + 1));
+                if (isSame)
+                    callInst.set(0, new Use(callInst, newFunc));
+            }
+        }
+        module.addFunction(newFunc);
+        return newFunc;
+    }
+
+    private record Specialization(Function func, List<Pair<Integer, ConstantNumber>> key, List<CallInst> callInsts, int weight) {
+    }
+}
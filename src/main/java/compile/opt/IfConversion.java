@@ -0,0 +1,176 @@
+package compile.opt;
+
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.ir.*;
+import compile.llvm.type.BasicType;
+import compile.llvm.value.Value;
+import compile.opt.analysis.AnalysisManager;
+
+import java.util.*;
+
+public class IfConversion implements FunctionPass {
+    private static final int MAX_SPECULATED_SIZE = 4;
+    private static final int MAX_SELECT_NUM = 2;
+    private final AnalysisManager analysisManager;
+    private final Map<BasicBlock, List<BasicBlock>> predMap = new HashMap<>();
+    private int convertedNum;
+
+    public IfConversion(AnalysisManager analysisManager) {
+        this.analysisManager = analysisManager;
+    }
+
+    @Override
+    public String getName() {
+        return "if-conversion";
+    }
+
+    @Override
+    public String getStatistics() {
+        return String.format("converted %d branches", convertedNum);
+    }
+
+    @Override
+    public boolean run(Function func) {
+        boolean changed = false;
+        boolean toContinue = true;
+        while (toContinue) {
+            toContinue = false;
+            calcPreds(func);
+            for (BasicBlock block : func) {
+                if (convert(func, block)) {
+                    convertedNum++;
+                    toContinue = true;
+                    break;
+                }
+            }
+            changed |= toContinue;
+        }
+        predMap.clear();
+        if (changed)
+            analysisManager.invalidateCFG(func);
+        return changed;
+    }
+
+    private void calcPreds(Function func) {
+        predMap.clear();
+        for (BasicBlock block : func)
+            predMap.put(block, new ArrayList<>());
+        for (BasicBlock block : func)
+            for (BasicBlock succ : block.getSuccessors())
+                predMap.get(succ).add(block);
+    }
+
+    private boolean convert(Function func, BasicBlock block) {
+        if (!(block.getLast() instanceof BranchInst branchInst) || !branchInst.isConditional())
+            return false;
+        BasicBlock ifTrue = branchInst.getOperand(1);
+        BasicBlock ifFalse = branchInst.getOperand(2);
+        if (ifTrue == ifFalse)
+            return false;
+        BasicBlock trueSucc = getSideSucc(block, ifTrue);
+        BasicBlock falseSucc = getSideSucc(block, ifFalse);
+        BasicBlock join;
+        BasicBlock trueBlock = null;
+        BasicBlock falseBlock = null;
+        if (trueSucc != null && trueSucc == falseSucc) {
+            join = trueSucc;
+            trueBlock = ifTrue;
+            falseBlock = ifFalse;
+        } else if (trueSucc == ifFalse) {
+            join = ifFalse;
+            trueBlock = ifTrue;
+        } else if (falseSucc == ifTrue) {
+            join = ifTrue;
+            falseBlock = ifFalse;
+        } else
+            return false;
+        if (join == func.getFirst() || join == block)
+            return false;
+        BasicBlock trueEdge = trueBlock != null ? trueBlock : block;
+        BasicBlock falseEdge = falseBlock != null ? falseBlock : block;
+        int size = 0;
+        int selectNum = 0;
+        for (BasicBlock side : Arrays.asList(trueBlock, falseBlock))
+            if (side != null)
+                for (Instruction inst : side)
+                    if (!(inst instanceof PhiInst) && !(inst instanceof BranchInst))
+                        size++;
+        for (Instruction inst : join) {
+            if (!(inst instanceof PhiInst phiInst))
+                break;
+            if (phiInst.getValue(trueEdge) == phiInst.getValue(falseEdge))
+                continue;
+            if (phiInst.getType() == BasicType.FLOAT)
+                return false;
+            selectNum++;
+        }
+        if (size > MAX_SPECULATED_SIZE || selectNum > MAX_SELECT_NUM)
+            return false;
+        Value cond = branchInst.getOperand(0);
+        for (BasicBlock side : Arrays.asList(trueBlock, falseBlock)) {
+            if (side == null)
+                continue;
+            while (side.size() > 1) {
+                Instruction inst = side.remove(0);
+                if (inst instanceof PhiInst phiInst) {
+                    phiInst.replaceAllUseAs(phiInst.getOperand(0));
+                    phiInst.clear();
+                    continue;
+                }
+                block.add(block.size() - 1, inst);
+            }
+        }
+        for (Instruction inst : join) {
+            if (!(inst instanceof PhiInst phiInst))
+                break;
+            Value trueValue = phiInst.getValue(trueEdge);
+            Value falseValue = phiInst.getValue(falseEdge);
+            Value value = trueValue;
+            if (trueValue != falseValue) {
+                SelectInst selectInst = new SelectInst(block, cond, trueValue, falseValue);
+                block.add(block.size() - 1, selectInst);
+                value = selectInst;
+            }
+            phiInst.removeBlock(trueEdge);
+            phiInst.removeBlock(falseEdge);
+            phiInst.add(block, value);
+        }
+        block.remove(branchInst);
+        branchInst.clear();
+        block.add(new BranchInst(block, join));
+        for (BasicBlock side : Arrays.asList(trueBlock, falseBlock)) {
+            if (side == null)
+                continue;
+            side.getLast().clear();
+            func.remove(side);
+        }
+        return true;
+    }
+
+    private BasicBlock getSideSucc(BasicBlock block, BasicBlock side) {
+        List<BasicBlock> preds = predMap.get(side);
+        if (preds.size() != 1 || preds.getFirst() != block)
+            return null;
+        if (!(side.getLast() instanceof BranchInst branchInst) || branchInst.isConditional())
+            return null;
+        for (int i = 0; i < side.size() - 1; i++)
+            if (!(side.get(i) instanceof PhiInst phiInst && phiInst.size() == 2) && !isSpeculatable(side.get(i)))
+                return null;
+        return branchInst.getOperand(0);
+    }
+
+    private boolean isSpeculatable(Instruction inst) {
+        return switch (inst) {
+            case BinaryOperator binaryOperator -> switch (binaryOperator.op) {
+                case SDIV, SREM, FDIV -> false;
+                default -> true;
+            };
+            case CmpInst cmpInst -> true;
+            case CastInst castInst -> true;
+            case GetElementPtrInst getElementPtrInst -> true;
+            case SelectInst selectInst -> true;
+            default -> false;
+        };
+    }
+}
@@ -0,0 +1,335 @@
+package compile.opt;
+
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.contant.ConstantNumber;
+import compile.llvm.ir.*;
+import compile.llvm.type.BasicType;
+import compile.llvm.value.Use;
+import compile.llvm.value.Value;
+
+import java.util.LinkedHashSet;
+import java.util.SequencedSet;
+
+public class InstCombine implements FunctionPass {
+    private final SequencedSet<Instruction> worklist = new LinkedHashSet<>();
+    private int combinedNum;
+    private int removedNum;
+
+    @Override
+    public String getName() {
+        return "instcombine";
+    }
+
+    @Override
+    public String getStatistics() {
+        return String.format("combined %d instructions, removed %d dead instructions", combinedNum, removedNum);
+    }
+
+    @Override
+    public boolean run(Function func) {
+        for (BasicBlock block : func)
+            for (Instruction inst : block)
+                worklist.add(inst);
+        boolean changed = false;
+        while (!worklist.isEmpty()) {
+            Instruction inst = worklist.removeFirst();
+            if (isTriviallyDead(inst)) {
+                erase(inst);
+                removedNum++;
+                changed = true;
+                continue;
+            }
+            Value value = combine(inst);
+            if (value == null)
+                continue;
+            pushUsers(inst);
+            if (value == inst)
+                worklist.add(inst);
+            else {
+                inst.replaceAllUseAs(value);
+                erase(inst);
+            }
+            combinedNum++;
+            changed = true;
+        }
+        return changed;
+    }
+
+    private boolean isTriviallyDead(Instruction inst) {
+        if (!inst.getUses().isEmpty())
+            return false;
+        return switch (inst) {
+            case BinaryOperator binaryOperator -> true;
+            case CmpInst cmpInst -> true;
+            case CastInst castInst -> true;
+            case SelectInst selectInst -> true;
+            case GetElementPtrInst getElementPtrInst -> true;
+            default -> false;
+        };
+    }
+
+    private void pushUsers(Instruction inst) {
+        for (Use use : inst.getUses())
+            if (use.getUser() instanceof Instruction user)
+                worklist.add(user);
+    }
+
+    private void erase(Instruction inst) {
+        for (int i = 0; i < inst.size(); i++)
+            if (inst.getOperand(i) instanceof Instruction operand)
+                worklist.add(operand);
+        inst.getBlock().remove(inst);
+        inst.clear();
+        worklist.remove(inst);
+    }
+
+    private Instruction insertBefore(Instruction inst, Instruction newInst) {
+        BasicBlock block = inst.getBlock();
+        block.add(block.indexOf(inst), newInst);
+        worklist.add(newInst);
+        return newInst;
+    }
+
+    private Value combine(Instruction inst) {
+        return switch (inst) {
+            case BinaryOperator binaryOperator -> combineBinary(binaryOperator);
+            case ICmpInst iCmpInst -> combineICmp(iCmpInst);
+            case FCmpInst fCmpInst -> combineFCmp(fCmpInst);
+            case FPToSIInst fpToSIInst -> combineFPToSI(fpToSIInst);
+            case SelectInst selectInst -> combineSelect(selectInst);
+            default -> null;
+        };
+    }
+
+    private Value combineBinary(BinaryOperator binaryOperator) {
+        Value operand1 = binaryOperator.getOperand(0);
+        Value operand2 = binaryOperator.getOperand(1);
+        if (operand1 instanceof ConstantNumber && operand2 instanceof ConstantNumber)
+            return null;
+        BasicBlock block = binaryOperator.getBlock();
+        boolean isCommutative = switch (binaryOperator.op) {
+            case ADD, FADD, MUL, FMUL, XOR -> true;
+            default -> false;
+        };
+        if (isCommutative && operand1 instanceof ConstantNumber) {
+            binaryOperator.set(0, new Use(binaryOperator, operand2));
+            binaryOperator.set(1, new Use(binaryOperator, operand1));
+            return binaryOperator;
+        }
+        return switch (binaryOperator.op) {
+            case ADD -> {
+                if (isInt(operand2, 0))
+                    yield operand1;
+                Value negated = getNegated(operand2);
+                if (negated != null)
+                    yield insertBefore(binaryOperator, new BinaryOperator(block, BinaryOperator.Op.SUB, operand1, negated));
+                negated = getNegated(operand1);
+                if (negated != null)
+                    yield insertBefore(binaryOperator, new BinaryOperator(block, BinaryOperator.Op.SUB, operand2, negated));
+                yield null;
+            }
+            case SUB -> {
+                if (isInt(operand2, 0))
+                    yield operand1;
+                if (operand1 == operand2)
+                    yield new ConstantNumber(0);
+                Value negated = getNegated(operand2);
+                if (negated != null) {
+                    if (isInt(operand1, 0))
+                        yield negated;
+                    yield insertBefore(binaryOperator, new BinaryOperator(block, BinaryOperator.Op.ADD, operand1, negated));
+                }
+                if (operand2 instanceof ConstantNumber number)
+                    yield insertBefore(binaryOperator, new BinaryOperator(block, BinaryOperator.Op.ADD, operand1, number.neg()));
+                if (operand1 instanceof BinaryOperator addInst && addInst.op == BinaryOperator.Op.ADD) {
+                    if (addInst.getOperand(0) == operand2)
+                        yield addInst.getOperand(1);
+                    if (addInst.getOperand(1) == operand2)
+                        yield addInst.getOperand(0);
+                }
+                yield null;
+            }
+            case MUL -> {
+                if (isInt(operand2, 0))
+                    yield new ConstantNumber(0);
+                if (isInt(operand2, 1))
+                    yield operand1;
+                if (isInt(operand2, -1))
+                    yield insertBefore(binaryOperator, new BinaryOperator(block, BinaryOperator.Op.SUB, new ConstantNumber(0), operand1));
+                yield null;
+            }
+            case SDIV -> {
+                if (isInt(operand2, 1))
+                    yield operand1;
+                if (isInt(operand2, -1))
+                    yield insertBefore(binaryOperator, new BinaryOperator(block, BinaryOperator.Op.SUB, new ConstantNumber(0), operand1));
+                yield null;
+            }
+            case SREM -> isInt(operand2, 1) || isInt(operand2, -1) ? new ConstantNumber(0) : null;
+            case XOR -> {
+                boolean isBool = binaryOperator.getType() == BasicType.I1;
+                if (isInt(operand2, 0))
+                    yield operand1;
+                if (operand1 == operand2)
+                    yield isBool ? new ConstantNumber(false) : new ConstantNumber(0);
+                if (!isBool || !isInt(operand2, 1))
+                    yield null;
+                if (operand1 instanceof BinaryOperator xorInst && xorInst.op == BinaryOperator.Op.XOR && isInt(xorInst.getOperand(1), 1))
+                    yield xorInst.getOperand(0);
+                if (operand1 instanceof CmpInst cmpInst && getInverseCond(cmpInst) != null)
+                    yield invert(binaryOperator, cmpInst);
+                yield null;
+            }
+            case FADD -> isFloat(operand2, -0.0f) ? operand1 : null;
+            case FSUB -> isFloat(operand2, 0.0f) ? operand1 : null;
+            case FMUL, FDIV -> isFloat(operand2, 1.0f) ? operand1 : null;
+        };
+    }
+
+    private Value combineICmp(ICmpInst iCmpInst) {
+        Value operand1 = iCmpInst.getOperand(0);
+        Value operand2 = iCmpInst.getOperand(1);
+        CmpInst.Cond cond = iCmpInst.getCond();
+        BasicBlock block = iCmpInst.getBlock();
+        if (operand1 instanceof ConstantNumber && operand2 instanceof ConstantNumber)
+            return null;
+        if (operand1 instanceof ConstantNumber)
+            return insertBefore(iCmpInst, new ICmpInst(block, getSwappedCond(cond), operand2, operand1));
+        if (operand1 == operand2)
+            return new ConstantNumber(evaluate(cond, 0, 0));
+        if (!(operand2 instanceof ConstantNumber number))
+            return null;
+        if (operand1 instanceof ZExtInst || operand1 instanceof SExtInst) {
+            Value bool = ((CastInst) operand1).getOperand(0);
+            boolean result0 = evaluate(cond, 0, number.intValue());
+            boolean result1 = evaluate(cond, operand1 instanceof ZExtInst ? 1 : -1, number.intValue());
+            if (result0 == result1)
+                return new ConstantNumber(result0);
+            if (result1)
+                return bool;
+            return invert(iCmpInst, bool);
+        }
+        if (cond != CmpInst.Cond.EQ && cond != CmpInst.Cond.NE || !(operand1 instanceof BinaryOperator binaryOperator))
+            return null;
+        if (binaryOperator.op == BinaryOperator.Op.SUB && number.intValue() == 0)
+            return insertBefore(iCmpInst, new ICmpInst(block, cond, binaryOperator.getOperand(0), binaryOperator.getOperand(1)));
+        if (binaryOperator.op == BinaryOperator.Op.ADD && binaryOperator.getOperand(1) instanceof ConstantNumber addend)
+            return insertBefore(iCmpInst, new ICmpInst(block, cond, binaryOperator.getOperand(0), number.sub(addend)));
+        return null;
+    }
+
+    private Value combineFCmp(FCmpInst fCmpInst) {
+        Value operand1 = fCmpInst.getOperand(0);
+        Value operand2 = fCmpInst.getOperand(1);
+        CmpInst.Cond cond = fCmpInst.getCond();
+        BasicBlock block = fCmpInst.getBlock();
+        if (operand1 instanceof ConstantNumber && operand2 instanceof ConstantNumber)
+            return null;
+        if (operand1 instanceof ConstantNumber)
+            return insertBefore(fCmpInst, new FCmpInst(block, getSwappedCond(cond), operand2, operand1));
+        if (cond != CmpInst.Cond.OEQ && cond != CmpInst.Cond.UNE || !(operand1 instanceof SIToFPInst siToFPInst) || !(operand2 instanceof ConstantNumber number))
+            return null;
+        float value = number.floatValue();
+        if (Math.abs(value) >= 1 << 24 || value != (int) value)
+            return null;
+        return insertBefore(fCmpInst, new ICmpInst(block, cond == CmpInst.Cond.OEQ ? CmpInst.Cond.EQ : CmpInst.Cond.NE, siToFPInst.getOperand(0), new ConstantNumber((int) value)));
+    }
+
+    private Value combineFPToSI(FPToSIInst fpToSIInst) {
+        if (!(fpToSIInst.getOperand(0) instanceof SIToFPInst siToFPInst))
+            return null;
+        Value value = siToFPInst.getOperand(0);
+        if (value instanceof ZExtInst || value instanceof SExtInst)
+            return value;
+        return null;
+    }
+
+    private Value combineSelect(SelectInst selectInst) {
+        Value cond = selectInst.getOperand(0);
+        Value trueValue = selectInst.getOperand(1);
+        Value falseValue = selectInst.getOperand(2);
+        BasicBlock block = selectInst.getBlock();
+        if (trueValue == falseValue)
+            return trueValue;
+        if (cond instanceof ConstantNumber number)
+            return number.intValue() != 0 ? trueValue : falseValue;
+        if (cond instanceof BinaryOperator xorInst && xorInst.op == BinaryOperator.Op.XOR && isInt(xorInst.getOperand(1), 1))
+            return insertBefore(selectInst, new SelectInst(block, xorInst.getOperand(0), falseValue, trueValue));
+        if (selectInst.getType() != BasicType.I32 || !isInt(falseValue, 0))
+            return null;
+        if (isInt(trueValue, 1))
+            return insertBefore(selectInst, new ZExtInst(block, BasicType.I32, cond));
+        if (isInt(trueValue, -1))
+            return insertBefore(selectInst, new SExtInst(block, BasicType.I32, cond));
+        return null;
+    }
+
+    private Value invert(Instruction inst, Value bool) {
+        BasicBlock block = inst.getBlock();
+        if (bool instanceof CmpInst cmpInst) {
+            CmpInst.Cond cond = getInverseCond(cmpInst);
+            if (cond != null)
+                return insertBefore(inst, switch (cmpInst) {
+                    case ICmpInst iCmpInst -> new ICmpInst(block, cond, iCmpInst.getOperand(0), iCmpInst.getOperand(1));
+                    case FCmpInst fCmpInst -> new FCmpInst(block, cond, fCmpInst.getOperand(0), fCmpInst.getOperand(1));
+                    default -> throw new IllegalStateException("Unexpected value: " + cmpInst);
+                });
+        }
+        return insertBefore(inst, new BinaryOperator(block, BinaryOperator.Op.XOR, bool, new ConstantNumber(true)));
+    }
+
+    private CmpInst.Cond getInverseCond(CmpInst cmpInst) {
+        return switch (cmpInst.getCond()) {
+            case EQ -> CmpInst.Cond.NE;
+            case NE -> CmpInst.Cond.EQ;
+            case SGT -> CmpInst.Cond.SLE;
+            case SGE -> CmpInst.Cond.SLT;
+            case SLT -> CmpInst.Cond.SGE;
+            case SLE -> CmpInst.Cond.SGT;
+            case OEQ -> CmpInst.Cond.UNE;
+            case UNE -> CmpInst.Cond.OEQ;
+            default -> null;
+        };
+    }
+
+    private CmpInst.Cond getSwappedCond(CmpInst.Cond cond) {
+        return switch (cond) {
+            case SGT -> CmpInst.Cond.SLT;
+            case SGE -> CmpInst.Cond.SLE;
+            case SLT -> CmpInst.Cond.SGT;
+            case SLE -> CmpInst.Cond.SGE;
+            case OGT -> CmpInst.Cond.OLT;
+            case OGE -> CmpInst.Cond.OLE;
+            case OLT -> CmpInst.Cond.OGT;
+            case OLE -> CmpInst.Cond.OGE;
+            default -> cond;
+        };
+    }
+
+    private boolean evaluate(CmpInst.Cond cond, int value1, int value2) {
+        return switch (cond) {
+            case EQ -> value1 == value2;
+            case NE -> value1 != value2;
+            case SGT -> value1 > value2;
+            case SGE -> value1 >= value2;
+            case SLT -> value1 < value2;
+            case SLE -> value1 <= value2;
+            default -> throw new IllegalStateException("Unexpected value: " + cond);
+        };
+    }
+
+    private Value getNegated(Value value) {
+        if (value instanceof BinaryOperator binaryOperator && binaryOperator.op == BinaryOperator.Op.SUB && isInt(binaryOperator.getOperand(0), 0))
+            return binaryOperator.getOperand(1);
+        return null;
+    }
+
+    private boolean isInt(Value value, int target) {
+        return value instanceof ConstantNumber number && number.getType() != BasicType.FLOAT && number.intValue() == target;
+    }
+
+    private boolean isFloat(Value value, float target) {
+        return value instanceof ConstantNumber number && number.getType() == BasicType.FLOAT && Float.floatToIntBits(number.floatValue()) == Float.floatToIntBits(target);
+    }
+}
@@ -0,0 +1,179 @@
+package compile.opt;
+
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.contant.ConstantNumber;
+import compile.llvm.ir.*;
+import compile.llvm.type.BasicType;
+import compile.llvm.value.Use;
+import compile.llvm.value.Value;
+import compile.opt.analysis.AnalysisManager;
+import compile.opt.analysis.DominatorTree;
+
+import java.util.*;
+
+public class JumpThreading implements FunctionPass {
+    private static final int MAX_DUPLICATED_SIZE = 8;
+    private final AnalysisManager analysisManager;
+    private int threadedNum;
+
+    public JumpThreading(AnalysisManager analysisManager) {
+        this.analysisManager = analysisManager;
+    }
+
+    @Override
+    public String getName() {
+        return "jump-threading";
+    }
+
+    @Override
+    public String getStatistics() {
+        return String.format("threaded %d edges", threadedNum);
+    }
+
+    @Override
+    public boolean run(Function func) {
+        boolean changed = false;
+        boolean toContinue = true;
+        while (toContinue) {
+            toContinue = false;
+            DominatorTree domTree = analysisManager.getDomTree(func);
+            for (BasicBlock block : domTree.getReversePostOrder()) {
+                if (!isThreadable(func, block))
+                    continue;
+                for (BasicBlock pred : domTree.getPreds(block)) {
+                    if (domTree.dominates(block, pred))
+                        continue;
+                    BasicBlock dest = findDest(block, pred);
+                    if (dest == null || dest == block)
+                        continue;
+                    thread(func, block, pred, dest);
+                    threadedNum++;
+                    toContinue = true;
+                    break;
+                }
+                if (toContinue)
+                    break;
+            }
+            if (toContinue) {
+                analysisManager.invalidateCFG(func);
+                CFGUtils.removeUnreachableBlocks(func, analysisManager.getDomTree(func));
+                analysisManager.invalidateCFG(func);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private boolean isThreadable(Function func, BasicBlock block) {
+        if (block == func.getFirst() || !(block.getLast() instanceof BranchInst branchInst) || !branchInst.isConditional())
+            return false;
+        int size = 0;
+        List<BasicBlock> succs = block.getSuccessors();
+        for (Instruction inst : block) {
+            if (!(inst instanceof PhiInst) && ++size > MAX_DUPLICATED_SIZE)
+                return false;
+            for (Use use : inst.getUses()) {
+                if (!(use.getUser() instanceof Instruction user))
+                    return false;
+                if (user.getBlock() != block && !(user instanceof PhiInst && succs.contains(user.getBlock())))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private BasicBlock findDest(BasicBlock block, BasicBlock pred) {
+        if (!(pred.getLast() instanceof BranchInst predBranchInst))
+            return null;
+        if (predBranchInst.isConditional() && predBranchInst.getOperand(1) == predBranchInst.getOperand(2))
+            return null;
+        BranchInst branchInst = (BranchInst) block.getLast();
+        ConstantNumber cond = evaluate(branchInst.getOperand(0), block, pred);
+        if (cond == null)
+            return null;
+        return branchInst.getOperand(cond.intValue() != 0 ? 1 : 2);
+    }
+
+    private ConstantNumber evaluate(Value value, BasicBlock block, BasicBlock pred) {
+        if (value instanceof ConstantNumber number)
+            return number;
+        if (!(value instanceof Instruction inst))
+            return null;
+        if (inst.getBlock() != block) {
+            if (pred.getLast() instanceof BranchInst branchInst && branchInst.isConditional() && branchInst.getOperand(0) == inst)
+                return new ConstantNumber(branchInst.getOperand(1) == block);
+            return null;
+        }
+        switch (inst) {
+            case PhiInst phiInst -> {
+                return phiInst.getValue(pred) instanceof ConstantNumber number ? number : null;
+            }
+            case ICmpInst iCmpInst -> {
+                ConstantNumber number1 = evaluate(iCmpInst.getOperand(0), block, pred);
+                ConstantNumber number2 = evaluate(iCmpInst.getOperand(1), block, pred);
+                if (number1 == null || number2 == null)
+                    return null;
+                int value1 = number1.intValue();
+                int value2 = number2.intValue();
+                return new ConstantNumber(switch (iCmpInst.getCond()) {
+                    case EQ -> value1 == value2;
+                    case NE -> value1 != value2;
+                    case SGT -> value1 > value2;
+                    case SGE -> value1 >= value2;
+                    case SLT -> value1 < value2;
+                    case SLE -> value1 <= value2;
+                    default -> throw new IllegalStateException("Unexpected value: " + iCmpInst.getCond());
+                });
+            }
+            case ZExtInst zExtInst -> {
+                ConstantNumber number = evaluate(zExtInst.getOperand(0), block, pred);
+                return number == null ? null : new ConstantNumber(number.intValue());
+            }
+            case BinaryOperator binaryOperator when binaryOperator.op == BinaryOperator.Op.XOR && binaryOperator.getType() == BasicType.I1 -> {
+                ConstantNumber number1 = evaluate(binaryOperator.getOperand(0), block, pred);
+                ConstantNumber number2 = evaluate(binaryOperator.getOperand(1), block, pred);
+                if (number1 == null || number2 == null)
+                    return null;
+                return new ConstantNumber((number1.intValue() ^ number2.intValue()) != 0);
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    private void thread(Function func, BasicBlock block, BasicBlock pred, BasicBlock dest) {
+        BasicBlock newBlock = new BasicBlock(func);
+        func.insertAfter(pred, newBlock);
+        Map<Value, Value> valueMap = new HashMap<>();
+        for (Instruction inst : block) {
+            switch (inst) {
+                case PhiInst phiInst -> valueMap.put(phiInst, phiInst.getValue(pred));
+                case BranchInst branchInst -> {
+                }
+                default -> {
+                    Instruction newInst = CloneUtils.cloneInst(newBlock, inst, valueMap);
+                    newBlock.add(newInst);
+                    valueMap.put(inst, newInst);
+                }
+            }
+        }
+        for (int i = newBlock.size() - 1; i >= 0; i--) {
+            Instruction inst = newBlock.get(i);
+            if (inst.getUses().isEmpty() && !(inst instanceof CallInst) && !(inst instanceof StoreInst)) {
+                newBlock.remove(i);
+                inst.clear();
+            }
+        }
+        newBlock.add(new BranchInst(newBlock, dest));
+        ((BranchInst) pred.getLast()).replaceBlock(block, newBlock);
+        CFGUtils.removePhiBlock(block, pred);
+        for (Instruction inst : dest) {
+            if (!(inst instanceof PhiInst phiInst))
+                break;
+            Value value = phiInst.getValue(block);
+            phiInst.add(newBlock, valueMap.getOrDefault(value, value));
+        }
+    }
+}
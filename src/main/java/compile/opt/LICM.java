@@ -0,0 +1,206 @@
+package compile.opt;
+
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.GlobalVariable;
+import compile.llvm.ir.*;
+import compile.llvm.type.Type;
+import compile.llvm.value.Use;
+import compile.llvm.value.Value;
+import compile.opt.analysis.AliasAnalysis;
+import compile.opt.analysis.AnalysisManager;
+import compile.opt.analysis.DominatorTree;
+import compile.opt.analysis.Loop;
+import compile.opt.analysis.SideEffectInfo;
+
+import java.util.*;
+
+public class LICM implements LoopPass {
+    private final AnalysisManager analysisManager;
+    private final Mem2Reg mem2Reg;
+    private int hoistedNum;
+    private int promotedNum;
+
+    public LICM(AnalysisManager analysisManager) {
+        this.analysisManager = analysisManager;
+        this.mem2Reg = new Mem2Reg(analysisManager);
+    }
+
+    @Override
+    public String getName() {
+        return "licm";
+    }
+
+    @Override
+    public String getStatistics() {
+        return String.format("hoisted %d instructions, promoted %d pointers", hoistedNum, promotedNum);
+    }
+
+    @Override
+    public boolean run(Loop loop) {
+        BasicBlock preheader = loop.getPreheader();
+        if (preheader == null)
+            return false;
+        Function func = loop.getHeader().getFunction();
+        DominatorTree domTree = analysisManager.getDomTree(func);
+        List<BasicBlock> blocks = new ArrayList<>();
+        for (BasicBlock block : domTree.getReversePostOrder())
+            if (loop.contains(block))
+                blocks.add(block);
+        List<Instruction> memInsts = new ArrayList<>();
+        for (BasicBlock block : blocks)
+            for (Instruction inst : block)
+                if (inst instanceof LoadInst || inst instanceof StoreInst || inst instanceof CallInst)
+                    memInsts.add(inst);
+        AliasAnalysis aliasAnalysis = analysisManager.getAliasAnalysis();
+        boolean changed = hoist(loop, domTree, blocks, preheader, memInsts, aliasAnalysis);
+        changed |= promote(loop, func, domTree, preheader, memInsts, aliasAnalysis);
+        return changed;
+    }
+
+    private boolean hoist(Loop loop, DominatorTree domTree, List<BasicBlock> blocks, BasicBlock preheader, List<Instruction> memInsts, AliasAnalysis aliasAnalysis) {
+        List<BasicBlock> exitingBlocks = loop.getExitingBlocks();
+        boolean changed = false;
+        boolean toContinue = true;
+        while (toContinue) {
+            toContinue = false;
+            for (BasicBlock block : blocks) {
+                for (int i = 0; i < block.size(); i++) {
+                    Instruction inst = block.get(i);
+                    if (!isInvariant(loop, inst))
+                        continue;
+                    boolean canHoist = switch (inst) {
+                        case BinaryOperator binaryOperator -> true;
+                        case CmpInst cmpInst -> true;
+                        case CastInst castInst -> true;
+                        case GetElementPtrInst getElementPtrInst -> true;
+                        case LoadInst loadInst ->
+                                !isClobbered(loadInst.getOperand(0), memInsts, aliasAnalysis) && isSafeToLoad(domTree, exitingBlocks, loadInst);
+                        default -> false;
+                    };
+                    if (!canHoist)
+                        continue;
+                    block.remove(i--);
+                    preheader.add(preheader.size() - 1, inst);
+                    memInsts.remove(inst);
+                    hoistedNum++;
+                    changed = true;
+                    toContinue = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    private boolean isInvariant(Loop loop, Instruction inst) {
+        for (int i = 0; i < inst.size(); i++)
+            if (inst.getOperand(i) instanceof Instruction operand && loop.contains(operand.getBlock()))
+                return false;
+        return true;
+    }
+
+    private boolean isClobbered(Value pointer, List<Instruction> memInsts, AliasAnalysis aliasAnalysis) {
+        for (Instruction inst : memInsts)
+            if (aliasAnalysis.getModRef(inst, pointer).isMod())
+                return true;
+        return false;
+    }
+
+    private boolean isSafeToLoad(DominatorTree domTree, List<BasicBlock> exitingBlocks, LoadInst loadInst) {
+        return isDereferenceable(loadInst.getOperand(0), loadInst.getType()) || isGuaranteedToExecute(domTree, exitingBlocks, loadInst.getBlock());
+    }
+
+    private boolean isGuaranteedToExecute(DominatorTree domTree, List<BasicBlock> exitingBlocks, BasicBlock block) {
+        for (BasicBlock exitingBlock : exitingBlocks)
+            if (!domTree.dominates(block, exitingBlock))
+                return false;
+        return true;
+    }
+
+    private boolean isDereferenceable(Value pointer, Type type) {
+        Integer offset = SideEffectInfo.getConstantOffset(pointer);
+        if (offset == null)
+            return false;
+        int size = switch (SideEffectInfo.getBasePointer(pointer)) {
+            case GlobalVariable global -> global.getType().getSize();
+            case AllocaInst allocaInst -> allocaInst.getType().baseType().getSize();
+            default -> -1;
+        };
+        return offset >= 0 && offset + type.getSize() <= size;
+    }
+
+    private boolean promote(Loop loop, Function func, DominatorTree domTree, BasicBlock preheader, List<Instruction> memInsts, AliasAnalysis aliasAnalysis) {
+        List<BasicBlock> exitBlocks = loop.getExitBlocks();
+        List<BasicBlock> exitingBlocks = loop.getExitingBlocks();
+        for (BasicBlock exitBlock : exitBlocks)
+            for (BasicBlock pred : domTree.getPreds(exitBlock))
+                if (!loop.contains(pred))
+                    return false;
+        Map<Value, Type> pointers = new LinkedHashMap<>();
+        for (Instruction inst : memInsts)
+            if (inst instanceof StoreInst storeInst)
+                pointers.put(storeInst.getOperand(1), storeInst.getOperand(0).getType());
+        boolean changed = false;
+        for (Map.Entry<Value, Type> entry : pointers.entrySet()) {
+            Value pointer = entry.getKey();
+            if (pointer instanceof Instruction pointerInst && loop.contains(pointerInst.getBlock()))
+                continue;
+            if (!AliasAnalysis.isIdentifiedObject(SideEffectInfo.getBasePointer(pointer)))
+                continue;
+            boolean isSafe = isDereferenceable(pointer, entry.getValue());
+            boolean isPromotable = true;
+            for (Instruction inst : memInsts) {
+                boolean isClobbered = switch (inst) {
+                    case LoadInst loadInst -> loadInst.getOperand(0) != pointer && aliasAnalysis.mayAlias(pointer, loadInst.getOperand(0));
+                    case StoreInst storeInst -> storeInst.getOperand(1) != pointer && aliasAnalysis.mayAlias(pointer, storeInst.getOperand(1));
+                    default -> aliasAnalysis.getModRef(inst, pointer) != AliasAnalysis.ModRefResult.NO_MOD_REF;
+                };
+                if (isClobbered) {
+                    isPromotable = false;
+                    break;
+                }
+                boolean isAccess = switch (inst) {
+                    case LoadInst loadInst -> loadInst.getOperand(0) == pointer;
+                    case StoreInst storeInst -> storeInst.getOperand(1) == pointer;
+                    default -> false;
+                };
+                if (isAccess && isGuaranteedToExecute(domTree, exitingBlocks, inst.getBlock()))
+                    isSafe = true;
+            }
+            if (!isPromotable || !isSafe)
+                continue;
+            promote(func, preheader, exitBlocks, memInsts, pointer);
+            promotedNum++;
+            changed = true;
+        }
+        if (changed)
+            mem2Reg.run(func);
+        return changed;
+    }
+
+    private void promote(Function func, BasicBlock preheader, List<BasicBlock> exitBlocks, List<Instruction> memInsts, Value pointer) {
+        LoadInst initLoad = new LoadInst(preheader, pointer);
+        AllocaInst allocaInst = new AllocaInst(func.getFirst(), initLoad.getType());
+        func.getFirst().add(0, allocaInst);
+        preheader.add(preheader.size() - 1, initLoad);
+        preheader.add(preheader.size() - 1, new StoreInst(preheader, initLoad, allocaInst));
+        for (Instruction inst : memInsts) {
+            switch (inst) {
+                case LoadInst loadInst when loadInst.getOperand(0) == pointer ->
+                        loadInst.set(0, new Use(loadInst, allocaInst));
+                case StoreInst storeInst when storeInst.getOperand(1) == pointer ->
+                        storeInst.set(1, new Use(storeInst, allocaInst));
+                default -> {
+                }
+            }
+        }
+        for (BasicBlock exitBlock : exitBlocks) {
+            int index = 0;
+            while (exitBlock.get(index) instanceof PhiInst)
+                index++;
+            LoadInst exitLoad = new LoadInst(exitBlock, allocaInst);
+            exitBlock.add(index, exitLoad);
+            exitBlock.add(index + 1, new StoreInst(exitBlock, exitLoad, pointer));
+        }
+    }
+}
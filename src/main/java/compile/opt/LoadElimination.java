@@ -0,0 +1,138 @@
+package compile.opt;
+
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.ir.*;
+import compile.llvm.type.Type;
+import compile.llvm.value.Value;
+import compile.opt.analysis.AliasAnalysis;
+import compile.opt.analysis.AnalysisManager;
+import compile.opt.analysis.DominatorTree;
+
+import java.util.*;
+
+public class LoadElimination implements FunctionPass {
+    private final AnalysisManager analysisManager;
+    private final Map<BasicBlock, Map<Value, Value>> outValues = new HashMap<>();
+    private final Set<PhiInst> pendingPhis = new HashSet<>();
+    private int forwardedNum;
+    private int removedNum;
+
+    public LoadElimination(AnalysisManager analysisManager) {
+        this.analysisManager = analysisManager;
+    }
+
+    @Override
+    public String getName() {
+        return "load-elim";
+    }
+
+    @Override
+    public String getStatistics() {
+        return String.format("forwarded %d stored values, removed %d redundant loads", forwardedNum, removedNum);
+    }
+
+    @Override
+    public boolean run(Function func) {
+        DominatorTree domTree = analysisManager.getDomTree(func);
+        AliasAnalysis aliasAnalysis = analysisManager.getAliasAnalysis();
+        boolean changed = false;
+        for (BasicBlock block : domTree.getReversePostOrder()) {
+            Map<Value, Value> values = mergePreds(domTree, block);
+            for (int i = 0; i < block.size(); i++) {
+                switch (block.get(i)) {
+                    case LoadInst loadInst -> {
+                        Value pointer = loadInst.getOperand(0);
+                        Value value = findValue(values, pointer, loadInst.getType(), aliasAnalysis);
+                        if (value == null) {
+                            values.put(pointer, loadInst);
+                            continue;
+                        }
+                        if (value instanceof LoadInst)
+                            removedNum++;
+                        else
+                            forwardedNum++;
+                        int oldSize = block.size();
+                        materialize(value);
+                        i += block.size() - oldSize;
+                        loadInst.replaceAllUseAs(value);
+                        block.remove(i--);
+                        loadInst.clear();
+                        changed = true;
+                    }
+                    case StoreInst storeInst -> {
+                        Value pointer = storeInst.getOperand(1);
+                        values.keySet().removeIf(key -> aliasAnalysis.mayAlias(key, pointer));
+                        values.put(pointer, storeInst.getOperand(0));
+                    }
+                    case CallInst callInst ->
+                            values.keySet().removeIf(key -> aliasAnalysis.getModRef(callInst, key).isMod());
+                    default -> {
+                    }
+                }
+            }
+            outValues.put(block, values);
+        }
+        for (PhiInst phiInst : pendingPhis)
+            phiInst.clear();
+        pendingPhis.clear();
+        outValues.clear();
+        return changed;
+    }
+
+    private Map<Value, Value> mergePreds(DominatorTree domTree, BasicBlock block) {
+        List<BasicBlock> preds = domTree.getPreds(block);
+        if (preds.isEmpty())
+            return new HashMap<>();
+        for (BasicBlock pred : preds)
+            if (!outValues.containsKey(pred))
+                return new HashMap<>();
+        if (preds.size() == 1)
+            return new HashMap<>(outValues.get(preds.getFirst()));
+        Map<Value, Value> values = new HashMap<>();
+        for (Map.Entry<Value, Value> entry : outValues.get(preds.getFirst()).entrySet()) {
+            Value pointer = entry.getKey();
+            Value value = entry.getValue();
+            boolean isSame = true;
+            boolean isAvailable = true;
+            for (BasicBlock pred : preds) {
+                Value predValue = outValues.get(pred).get(pointer);
+                if (predValue == null || !predValue.getType().equals(value.getType())) {
+                    isAvailable = false;
+                    break;
+                }
+                isSame &= predValue == value;
+            }
+            if (!isAvailable)
+                continue;
+            if (isSame) {
+                values.put(pointer, value);
+                continue;
+            }
+            PhiInst phiInst = new PhiInst(block, value.getType());
+            for (BasicBlock pred : preds)
+                phiInst.add(pred, outValues.get(pred).get(pointer));
+            pendingPhis.add(phiInst);
+            values.put(pointer, phiInst);
+        }
+        return values;
+    }
+
+    private Value findValue(Map<Value, Value> values, Value pointer, Type type, AliasAnalysis aliasAnalysis) {
+        Value value = values.get(pointer);
+        if (value != null)
+            return value.getType().equals(type) ? value : null;
+        for (Map.Entry<Value, Value> entry : values.entrySet())
+            if (entry.getValue().getType().equals(type) && aliasAnalysis.alias(entry.getKey(), pointer) == AliasAnalysis.AliasResult.MUST_ALIAS)
+                return entry.getValue();
+        return null;
+    }
+
+    private void materialize(Value value) {
+        if (!(value instanceof PhiInst phiInst) || !pendingPhis.remove(phiInst))
+            return;
+        phiInst.getBlock().add(0, phiInst);
+        for (int i = 0; i < phiInst.size(); i += 2)
+            materialize(phiInst.getOperand(i));
+    }
+}
@@ -0,0 +1,7 @@
+package compile.opt;
+
+import compile.opt.analysis.Loop;
+
+public interface LoopPass extends Pass {
+    boolean run(Loop loop);
+}
@@ -0,0 +1,64 @@
+package compile.opt;
+
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.opt.analysis.AnalysisManager;
+import compile.opt.analysis.DominatorTree;
+import compile.opt.analysis.Loop;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LoopSimplify implements FunctionPass {
+    private final AnalysisManager analysisManager;
+
+    public LoopSimplify(AnalysisManager analysisManager) {
+        this.analysisManager = analysisManager;
+    }
+
+    @Override
+    public String getName() {
+        return "loop-simplify";
+    }
+
+    @Override
+    public boolean run(Function func) {
+        boolean changed = false;
+        boolean toContinue = true;
+        while (toContinue) {
+            toContinue = false;
+            for (Loop loop : analysisManager.getLoopInfo(func).getLoops()) {
+                if (simplify(func, loop)) {
+                    analysisManager.invalidateCFG(func);
+                    changed = true;
+                    toContinue = true;
+                    break;
+                }
+            }
+        }
+        return changed;
+    }
+
+    private boolean simplify(Function func, Loop loop) {
+        if (loop.getPreheader() == null) {
+            CFGUtils.splitPreds(loop.getHeader(), loop.getEnteringBlocks());
+            return true;
+        }
+        DominatorTree domTree = analysisManager.getDomTree(func);
+        for (BasicBlock exitBlock : loop.getExitBlocks()) {
+            List<BasicBlock> insidePreds = new ArrayList<>();
+            boolean isDedicated = true;
+            for (BasicBlock pred : domTree.getPreds(exitBlock)) {
+                if (loop.contains(pred))
+                    insidePreds.add(pred);
+                else
+                    isDedicated = false;
+            }
+            if (!isDedicated) {
+                CFGUtils.splitPreds(exitBlock, insidePreds);
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,203 @@
+package compile.opt;
+
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.contant.ConstantNumber;
+import compile.llvm.ir.*;
+import compile.llvm.value.Use;
+import compile.llvm.value.Value;
+import compile.opt.analysis.AnalysisManager;
+import compile.opt.analysis.Loop;
+import compile.opt.analysis.LoopInfo;
+import compile.opt.analysis.ScalarEvolution;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.*;
+
+public class LoopStrengthReduce implements LoopPass {
+    private final AnalysisManager analysisManager;
+    private int createdNum;
+    private int rewrittenNum;
+
+    public LoopStrengthReduce(AnalysisManager analysisManager) {
+        this.analysisManager = analysisManager;
+    }
+
+    @Override
+    public String getName() {
+        return "loop-reduce";
+    }
+
+    @Override
+    public String getStatistics() {
+        return String.format("created %d pointer induction variables, rewrote %d addresses", createdNum, rewrittenNum);
+    }
+
+    @Override
+    public boolean run(Loop loop) {
+        BasicBlock preheader = loop.getPreheader();
+        BasicBlock latch = loop.getLatch();
+        if (preheader == null || latch == null)
+            return false;
+        ScalarEvolution scev = new ScalarEvolution(loop);
+        if (scev.getInductionVars().isEmpty())
+            return false;
+        Function func = loop.getHeader().getFunction();
+        LoopInfo loopInfo = analysisManager.getLoopInfo(func);
+        Map<List<Value>, List<Pair<GetElementPtrInst, Integer>>> groups = new LinkedHashMap<>();
+        for (BasicBlock block : analysisManager.getDomTree(func).getReversePostOrder()) {
+            if (loopInfo.getLoopFor(block) != loop)
+                continue;
+            for (Instruction inst : block)
+                if (inst instanceof GetElementPtrInst getElementPtrInst && isCandidate(loop, scev, getElementPtrInst))
+                    addCandidate(groups, getElementPtrInst);
+        }
+        if (groups.isEmpty())
+            return false;
+        Map<PhiInst, Pair<PhiInst, List<Value>>> ivPointers = new HashMap<>();
+        for (Map.Entry<List<Value>, List<Pair<GetElementPtrInst, Integer>>> entry : groups.entrySet()) {
+            List<Value> key = entry.getKey();
+            Value index = key.getLast();
+            PhiInst pointerPhi = createPointerPhi(loop, scev, preheader, latch, key, entry.getValue().getFirst().getLeft());
+            createdNum++;
+            for (Pair<GetElementPtrInst, Integer> candidate : entry.getValue()) {
+                GetElementPtrInst getElementPtrInst = candidate.getLeft();
+                BasicBlock block = getElementPtrInst.getBlock();
+                Value newPointer = pointerPhi;
+                if (candidate.getRight() != 0) {
+                    newPointer = new GetElementPtrInst(block, pointerPhi, new ConstantNumber(candidate.getRight()));
+                    block.add(block.indexOf(getElementPtrInst), (Instruction) newPointer);
+                }
+                getElementPtrInst.replaceAllUseAs(newPointer);
+                block.remove(getElementPtrInst);
+                getElementPtrInst.clear();
+                rewrittenNum++;
+            }
+            if (index instanceof PhiInst ivPhi && scev.getStep(ivPhi) != null)
+                ivPointers.put(ivPhi, Pair.of(pointerPhi, key));
+        }
+        replaceExitTest(loop, scev, preheader, ivPointers);
+        return true;
+    }
+
+    private boolean isCandidate(Loop loop, ScalarEvolution scev, GetElementPtrInst getElementPtrInst) {
+        for (int i = 0; i < getElementPtrInst.size() - 1; i++)
+            if (!scev.isInvariant(getElementPtrInst.getOperand(i)))
+                return false;
+        Value index = getElementPtrInst.getLastOperand();
+        if (scev.isInvariant(index))
+            return false;
+        Integer stride = scev.getStride(index);
+        if (stride == null || stride == 0)
+            return false;
+        for (Use use : getElementPtrInst.getUses())
+            if (!(use.getUser() instanceof Instruction user) || !loop.contains(user.getBlock()))
+                return false;
+        return true;
+    }
+
+    private void addCandidate(Map<List<Value>, List<Pair<GetElementPtrInst, Integer>>> groups, GetElementPtrInst getElementPtrInst) {
+        Value index = getElementPtrInst.getLastOperand();
+        int offset = 0;
+        while (index instanceof BinaryOperator binaryOperator && binaryOperator.getOperand(1) instanceof ConstantNumber number) {
+            if (binaryOperator.op == BinaryOperator.Op.ADD)
+                offset += number.intValue();
+            else if (binaryOperator.op == BinaryOperator.Op.SUB)
+                offset -= number.intValue();
+            else
+                break;
+            index = binaryOperator.getOperand(0);
+        }
+        List<Value> key = new ArrayList<>();
+        for (int i = 0; i < getElementPtrInst.size() - 1; i++)
+            key.add(getElementPtrInst.getOperand(i));
+        key.add(index);
+        groups.computeIfAbsent(key, k -> new ArrayList<>()).add(Pair.of(getElementPtrInst, offset));
+    }
+
+    private PhiInst createPointerPhi(Loop loop, ScalarEvolution scev, BasicBlock preheader, BasicBlock latch, List<Value> key, GetElementPtrInst template) {
+        BasicBlock header = loop.getHeader();
+        Value initIndex = expandAtEntry(scev, preheader, key.getLast());
+        GetElementPtrInst initPointer = createGEP(preheader, key, initIndex);
+        preheader.add(preheader.size() - 1, initPointer);
+        PhiInst pointerPhi = new PhiInst(header, template.getType());
+        header.add(0, pointerPhi);
+        GetElementPtrInst nextPointer = new GetElementPtrInst(latch, pointerPhi, new ConstantNumber(scev.getStride(key.getLast())));
+        latch.add(latch.size() - 1, nextPointer);
+        pointerPhi.add(preheader, initPointer);
+        pointerPhi.add(latch, nextPointer);
+        return pointerPhi;
+    }
+
+    private GetElementPtrInst createGEP(BasicBlock block, List<Value> key, Value lastIndex) {
+        Value[] indexes = new Value[key.size() - 1];
+        for (int i = 1; i < key.size() - 1; i++)
+            indexes[i - 1] = key.get(i);
+        indexes[indexes.length - 1] = lastIndex;
+        return new GetElementPtrInst(block, key.getFirst(), indexes);
+    }
+
+    private Value expandAtEntry(ScalarEvolution scev, BasicBlock preheader, Value value) {
+        if (scev.isInvariant(value))
+            return value;
+        return switch (value) {
+            case PhiInst phiInst -> phiInst.getValue(preheader);
+            case BinaryOperator binaryOperator -> {
+                BinaryOperator newInst = new BinaryOperator(preheader, binaryOperator.op, expandAtEntry(scev, preheader, binaryOperator.getOperand(0)), expandAtEntry(scev, preheader, binaryOperator.getOperand(1)));
+                preheader.add(preheader.size() - 1, newInst);
+                yield newInst;
+            }
+            default -> throw new IllegalStateException("Unexpected value: " + value);
+        };
+    }
+
+    private void replaceExitTest(Loop loop, ScalarEvolution scev, BasicBlock preheader, Map<PhiInst, Pair<PhiInst, List<Value>>> ivPointers) {
+        BasicBlock header = loop.getHeader();
+        if (!(header.getLast() instanceof BranchInst branchInst) || !branchInst.isConditional() || !(branchInst.getOperand(0) instanceof ICmpInst cmpInst))
+            return;
+        if (cmpInst.getBlock() != header || cmpInst.getUses().size() != 1)
+            return;
+        PhiInst ivPhi;
+        Value bound;
+        ICmpInst.Cond cond;
+        if (cmpInst.getOperand(0) instanceof PhiInst phiInst && ivPointers.containsKey(phiInst)) {
+            ivPhi = phiInst;
+            bound = cmpInst.getOperand(1);
+            cond = cmpInst.getCond();
+        } else if (cmpInst.getOperand(1) instanceof PhiInst phiInst && ivPointers.containsKey(phiInst)) {
+            ivPhi = phiInst;
+            bound = cmpInst.getOperand(0);
+            cond = switch (cmpInst.getCond()) {
+                case SLT -> ICmpInst.Cond.SGT;
+                case SLE -> ICmpInst.Cond.SGE;
+                case SGT -> ICmpInst.Cond.SLT;
+                case SGE -> ICmpInst.Cond.SLE;
+                default -> cmpInst.getCond();
+            };
+        } else
+            return;
+        int step = scev.getStep(ivPhi);
+        boolean isMonotonic = switch (cond) {
+            case SLT, SLE -> step > 0;
+            case SGT, SGE -> step < 0;
+            default -> false;
+        };
+        if (!isMonotonic || !scev.isInvariant(bound))
+            return;
+        BinaryOperator next = (BinaryOperator) ivPhi.getValue(loop.getLatch());
+        for (Use use : ivPhi.getUses())
+            if (use.getUser() != next && use.getUser() != cmpInst)
+                return;
+        for (Use use : next.getUses())
+            if (use.getUser() != ivPhi)
+                return;
+        PhiInst pointerPhi = ivPointers.get(ivPhi).getLeft();
+        GetElementPtrInst endPointer = createGEP(preheader, ivPointers.get(ivPhi).getRight(), bound);
+        preheader.add(preheader.size() - 1, endPointer);
+        ICmpInst newCmpInst = new ICmpInst(header, cond, pointerPhi, endPointer);
+        header.add(header.indexOf(cmpInst), newCmpInst);
+        cmpInst.replaceAllUseAs(newCmpInst);
+        header.remove(cmpInst);
+        cmpInst.clear();
+    }
+}
@@ -0,0 +1,258 @@
+package compile.opt;
+
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.contant.ConstantNumber;
+import compile.llvm.ir.*;
+import compile.llvm.value.Value;
+import compile.opt.analysis.AnalysisManager;
+import compile.opt.analysis.Loop;
+import compile.opt.analysis.ScalarEvolution;
+
+import java.util.*;
+
+public class LoopUnroll implements LoopPass {
+    private static final int FULL_UNROLL_SIZE = 256;
+    private static final int PARTIAL_UNROLL_SIZE = 128;
+    private final AnalysisManager analysisManager;
+    private final int factor;
+    private final Set<BasicBlock> generatedHeaders = new HashSet<>();
+    private int fullyUnrolledNum;
+    private int partiallyUnrolledNum;
+
+    public LoopUnroll(AnalysisManager analysisManager, int factor) {
+        this.analysisManager = analysisManager;
+        this.factor = factor;
+    }
+
+    @Override
+    public String getName() {
+        return "loop-unroll";
+    }
+
+    @Override
+    public String getStatistics() {
+        return String.format("fully unrolled %d loops, partially unrolled %d loops", fullyUnrolledNum, partiallyUnrolledNum);
+    }
+
+    @Override
+    public boolean run(Loop loop) {
+        BasicBlock header = loop.getHeader();
+        BasicBlock preheader = loop.getPreheader();
+        BasicBlock latch = loop.getLatch();
+        if (!loop.getSubLoops().isEmpty() || generatedHeaders.contains(header) || preheader == null || latch == null)
+            return false;
+        if (!loop.getExitingBlocks().equals(List.of(header)) || !(header.getLast() instanceof BranchInst branchInst) || !branchInst.isConditional())
+            return false;
+        if (!(branchInst.getOperand(0) instanceof ICmpInst cmpInst) || cmpInst.getBlock() != header || cmpInst.getUses().size() != 1 || !loop.contains((BasicBlock) branchInst.getOperand(1)))
+            return false;
+        for (Instruction inst : header)
+            if (!(inst instanceof PhiInst) && inst != cmpInst && inst != branchInst)
+                return false;
+        InductionVar iv = findInductionVar(loop, header, cmpInst);
+        if (iv == null)
+            return false;
+        Function func = header.getFunction();
+        List<BasicBlock> body = new ArrayList<>();
+        for (BasicBlock block : analysisManager.getDomTree(func).getReversePostOrder())
+            if (block != header && loop.contains(block))
+                body.add(block);
+        int bodySize = 0;
+        for (BasicBlock block : body)
+            bodySize += block.size();
+        int tripCount = calcTripCount(iv, preheader, FULL_UNROLL_SIZE / Math.max(bodySize, 1));
+        if (tripCount >= 0) {
+            fullUnroll(func, header, preheader, latch, branchInst.getOperand(2), body, tripCount);
+            fullyUnrolledNum++;
+            analysisManager.invalidateCFG(func);
+            return true;
+        }
+        if (factor > 1 && bodySize * factor <= PARTIAL_UNROLL_SIZE && canPartialUnroll(iv)) {
+            partialUnroll(func, header, preheader, latch, body, iv);
+            partiallyUnrolledNum++;
+            analysisManager.invalidateCFG(func);
+            return true;
+        }
+        return false;
+    }
+
+    private InductionVar findInductionVar(Loop loop, BasicBlock header, ICmpInst cmpInst) {
+        PhiInst phiInst;
+        Value bound;
+        ICmpInst.Cond cond;
+        if (cmpInst.getOperand(0) instanceof PhiInst phi && phi.getBlock() == header) {
+            phiInst = phi;
+            bound = cmpInst.getOperand(1);
+            cond = cmpInst.getCond();
+        } else if (cmpInst.getOperand(1) instanceof PhiInst phi && phi.getBlock() == header) {
+            phiInst = phi;
+            bound = cmpInst.getOperand(0);
+            cond = switch (cmpInst.getCond()) {
+                case SLT -> ICmpInst.Cond.SGT;
+                case SLE -> ICmpInst.Cond.SGE;
+                case SGT -> ICmpInst.Cond.SLT;
+                case SGE -> ICmpInst.Cond.SLE;
+                default -> cmpInst.getCond();
+            };
+        } else
+            return null;
+        ScalarEvolution scev = new ScalarEvolution(loop);
+        if (!scev.isInvariant(bound))
+            return null;
+        Integer step = scev.getStep(phiInst);
+        if (step == null)
+            return null;
+        return new InductionVar(phiInst, bound, cond, step);
+    }
+
+    private int calcTripCount(InductionVar iv, BasicBlock preheader, int maxTripCount) {
+        if (!(iv.phi().getValue(preheader) instanceof ConstantNumber init) || !(iv.bound() instanceof ConstantNumber bound))
+            return -1;
+        int value = init.intValue();
+        int boundValue = bound.intValue();
+        for (int tripCount = 0; tripCount <= maxTripCount; tripCount++) {
+            boolean toContinue = switch (iv.cond()) {
+                case EQ -> value == boundValue;
+                case NE -> value != boundValue;
+                case SGT -> value > boundValue;
+                case SGE -> value >= boundValue;
+                case SLT -> value < boundValue;
+                case SLE -> value <= boundValue;
+                default -> throw new IllegalStateException("Unexpected value: " + iv.cond());
+            };
+            if (!toContinue)
+                return tripCount;
+            value += iv.step();
+        }
+        return -1;
+    }
+
+    private boolean canPartialUnroll(InductionVar iv) {
+        if (Math.abs((long) (factor - 1) * iv.step()) >= Integer.MAX_VALUE)
+            return false;
+        return switch (iv.cond()) {
+            case SLT, SLE -> iv.step() > 0;
+            case SGT, SGE -> iv.step() < 0;
+            default -> false;
+        };
+    }
+
+    private void fullUnroll(Function func, BasicBlock header, BasicBlock preheader, BasicBlock latch, BasicBlock exit, List<BasicBlock> body, int tripCount) {
+        BranchInst branchInst = (BranchInst) header.getLast();
+        BasicBlock bodyEntry = branchInst.getOperand(1);
+        Map<Value, Value> phiValues = new HashMap<>();
+        for (Instruction inst : header)
+            if (inst instanceof PhiInst phiInst)
+                phiValues.put(phiInst, phiInst.getValue(preheader));
+        BasicBlock prevBlock = preheader;
+        int insertIndex = func.indexOf(header);
+        for (int i = 0; i < tripCount; i++) {
+            Map<Value, Value> valueMap = cloneIteration(func, insertIndex, body, phiValues, branchInst.getOperand(0));
+            insertIndex += body.size();
+            ((BranchInst) prevBlock.getLast()).replaceBlock(header, (BasicBlock) valueMap.get(bodyEntry));
+            phiValues = nextPhiValues(header, latch, valueMap);
+            prevBlock = (BasicBlock) valueMap.get(latch);
+        }
+        ((BranchInst) prevBlock.getLast()).replaceBlock(header, exit);
+        for (Instruction inst : exit) {
+            if (!(inst instanceof PhiInst phiInst))
+                break;
+            Value value = phiInst.getValue(header);
+            phiInst.replaceBlock(header, prevBlock);
+            phiInst.setValue(prevBlock, phiValues.getOrDefault(value, value));
+        }
+        for (Instruction inst : header)
+            if (inst instanceof PhiInst phiInst)
+                phiInst.replaceAllUseAs(phiValues.get(phiInst));
+        CFGUtils.removeBlock(header);
+        for (BasicBlock block : body)
+            CFGUtils.removeBlock(block);
+    }
+
+    private void partialUnroll(Function func, BasicBlock header, BasicBlock preheader, BasicBlock latch, List<BasicBlock> body, InductionVar iv) {
+        BranchInst branchInst = (BranchInst) header.getLast();
+        BasicBlock bodyEntry = branchInst.getOperand(1);
+        ICmpInst.Cond newCond = switch (iv.cond()) {
+            case SLE -> ICmpInst.Cond.SLT;
+            case SGE -> ICmpInst.Cond.SGT;
+            default -> iv.cond();
+        };
+        int offset = switch (iv.cond()) {
+            case SLE -> (factor - 1) * iv.step() - 1;
+            case SGE -> (factor - 1) * iv.step() + 1;
+            default -> (factor - 1) * iv.step();
+        };
+        Value newBound = buildBound(preheader, iv.bound(), offset, iv.step() > 0);
+        BasicBlock newHeader = new BasicBlock(func);
+        int insertIndex = func.indexOf(header);
+        func.add(insertIndex++, newHeader);
+        generatedHeaders.add(newHeader);
+        Map<PhiInst, PhiInst> newPhis = new LinkedHashMap<>();
+        Map<Value, Value> phiValues = new HashMap<>();
+        for (Instruction inst : header) {
+            if (!(inst instanceof PhiInst phiInst))
+                break;
+            PhiInst newPhiInst = new PhiInst(newHeader, phiInst.getType());
+            newPhiInst.add(preheader, phiInst.getValue(preheader));
+            newHeader.add(newPhiInst);
+            newPhis.put(phiInst, newPhiInst);
+            phiValues.put(phiInst, newPhiInst);
+        }
+        ICmpInst newCmpInst = new ICmpInst(newHeader, newCond, newPhis.get(iv.phi()), newBound);
+        newHeader.add(newCmpInst);
+        newHeader.add(new BranchInst(newHeader, newCmpInst, bodyEntry, header));
+        BasicBlock prevBlock = newHeader;
+        for (int i = 0; i < factor; i++) {
+            Map<Value, Value> valueMap = cloneIteration(func, insertIndex, body, phiValues, branchInst.getOperand(0));
+            insertIndex += body.size();
+            ((BranchInst) prevBlock.getLast()).replaceBlock(i == 0 ? bodyEntry : header, (BasicBlock) valueMap.get(bodyEntry));
+            phiValues = nextPhiValues(header, latch, valueMap);
+            prevBlock = (BasicBlock) valueMap.get(latch);
+        }
+        ((BranchInst) prevBlock.getLast()).replaceBlock(header, newHeader);
+        for (Map.Entry<PhiInst, PhiInst> entry : newPhis.entrySet()) {
+            PhiInst phiInst = entry.getKey();
+            PhiInst newPhiInst = entry.getValue();
+            newPhiInst.add(prevBlock, phiValues.get(phiInst));
+            phiInst.replaceBlock(preheader, newHeader);
+            phiInst.setValue(newHeader, newPhiInst);
+        }
+        ((BranchInst) preheader.getLast()).replaceBlock(header, newHeader);
+    }
+
+    private Value buildBound(BasicBlock preheader, Value bound, int offset, boolean isIncreasing) {
+        int limit = isIncreasing ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        if (bound instanceof ConstantNumber number) {
+            long value = (long) number.intValue() - offset;
+            return new ConstantNumber((int) (isIncreasing ? Long.max(value, limit) : Long.min(value, limit)));
+        }
+        ICmpInst overflowInst = new ICmpInst(preheader, isIncreasing ? ICmpInst.Cond.SLT : ICmpInst.Cond.SGT, bound, new ConstantNumber(limit + offset));
+        BinaryOperator subInst = new BinaryOperator(preheader, BinaryOperator.Op.SUB, bound, new ConstantNumber(offset));
+        SelectInst selectInst = new SelectInst(preheader, overflowInst, new ConstantNumber(limit), subInst);
+        preheader.add(preheader.size() - 1, overflowInst);
+        preheader.add(preheader.size() - 1, subInst);
+        preheader.add(preheader.size() - 1, selectInst);
+        return selectInst;
+    }
+
+    private Map<Value, Value> cloneIteration(Function func, int insertIndex, List<BasicBlock> body, Map<Value, Value> phiValues, Value cond) {
+        Map<Value, Value> valueMap = new HashMap<>(phiValues);
+        valueMap.put(cond, new ConstantNumber(true));
+        func.add(insertIndex, CloneUtils.cloneBlocks(body, valueMap));
+        return valueMap;
+    }
+
+    private Map<Value, Value> nextPhiValues(BasicBlock header, BasicBlock latch, Map<Value, Value> valueMap) {
+        Map<Value, Value> phiValues = new HashMap<>();
+        for (Instruction inst : header) {
+            if (!(inst instanceof PhiInst phiInst))
+                break;
+            Value value = phiInst.getValue(latch);
+            phiValues.put(phiInst, valueMap.getOrDefault(value, value));
+        }
+        return phiValues;
+    }
+
+    private record InductionVar(PhiInst phi, Value bound, ICmpInst.Cond cond, int step) {
+    }
+}
@@ -0,0 +1,7 @@
+package compile.opt;
+
+import compile.codegen.mirgen.MachineFunction;
+
+public interface MachinePass extends Pass {
+    boolean run(MachineFunction func);
+}
@@ -0,0 +1,230 @@
+package compile.opt;
+
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.contant.ConstantNumber;
+import compile.llvm.ir.*;
+import compile.llvm.type.BasicType;
+import compile.llvm.type.PointerType;
+import compile.llvm.type.Type;
+import compile.llvm.value.Use;
+import compile.llvm.value.Value;
+import compile.opt.analysis.AnalysisManager;
+import compile.opt.analysis.DominatorTree;
+
+import java.util.*;
+
+public class Mem2Reg implements FunctionPass {
+    private final AnalysisManager analysisManager;
+
+    public Mem2Reg(AnalysisManager analysisManager) {
+        this.analysisManager = analysisManager;
+    }
+
+    @Override
+    public String getName() {
+        return "mem2reg";
+    }
+
+    @Override
+    public boolean run(Function func) {
+        boolean changed = removeUnreachableBlocks(func);
+        DominatorTree domTree = analysisManager.getDomTree(func);
+        List<AllocaInst> allocas = new ArrayList<>();
+        for (Instruction inst : func.getFirst())
+            if (inst instanceof AllocaInst allocaInst && isPromotable(allocaInst))
+                allocas.add(allocaInst);
+        if (allocas.isEmpty())
+            return changed;
+        Map<PhiInst, AllocaInst> phiToAllocaMap = new HashMap<>();
+        for (AllocaInst allocaInst : allocas)
+            insertPhis(domTree, allocaInst, phiToAllocaMap);
+        rename(func, domTree, allocas, phiToAllocaMap);
+        for (AllocaInst allocaInst : allocas) {
+            allocaInst.getBlock().remove(allocaInst);
+            allocaInst.clear();
+        }
+        removeTrivialPhis(phiToAllocaMap.keySet());
+        return true;
+    }
+
+    private boolean removeUnreachableBlocks(Function func) {
+        DominatorTree domTree = analysisManager.getDomTree(func);
+        List<BasicBlock> unreachableBlocks = new ArrayList<>();
+        for (BasicBlock block : func)
+            if (!domTree.isReachable(block))
+                unreachableBlocks.add(block);
+        for (BasicBlock block : unreachableBlocks)
+            CFGUtils.removeBlock(block);
+        if (unreachableBlocks.isEmpty())
+            return false;
+        analysisManager.invalidateCFG(func);
+        return true;
+    }
+
+    private boolean isPromotable(AllocaInst allocaInst) {
+        Type type = allocaInst.getType().baseType();
+        if (type != BasicType.I32 && type != BasicType.FLOAT && !(type instanceof PointerType))
+            return false;
+        for (Use use : allocaInst.getUses()) {
+            switch (use.getUser()) {
+                case LoadInst loadInst -> {
+                }
+                case StoreInst storeInst -> {
+                    if (storeInst.getOperand(0) == allocaInst)
+                        return false;
+                }
+                default -> {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void insertPhis(DominatorTree domTree, AllocaInst allocaInst, Map<PhiInst, AllocaInst> phiToAllocaMap) {
+        Set<BasicBlock> defBlocks = new HashSet<>();
+        Set<BasicBlock> useBlocks = new HashSet<>();
+        for (Use use : allocaInst.getUses()) {
+            Instruction inst = (Instruction) use.getUser();
+            if (inst instanceof StoreInst)
+                defBlocks.add(inst.getBlock());
+            else
+                useBlocks.add(inst.getBlock());
+        }
+        Set<BasicBlock> liveInBlocks = calcLiveInBlocks(domTree, allocaInst, defBlocks, useBlocks);
+        Set<BasicBlock> phiBlocks = new HashSet<>();
+        Deque<BasicBlock> worklist = new ArrayDeque<>(defBlocks);
+        while (!worklist.isEmpty()) {
+            BasicBlock block = worklist.pop();
+            for (BasicBlock frontier : domTree.getFrontier(block)) {
+                if (!liveInBlocks.contains(frontier) || !phiBlocks.add(frontier))
+                    continue;
+                PhiInst phiInst = new PhiInst(frontier, allocaInst.getType().baseType());
+                frontier.add(0, phiInst);
+                phiToAllocaMap.put(phiInst, allocaInst);
+                if (!defBlocks.contains(frontier))
+                    worklist.push(frontier);
+            }
+        }
+    }
+
+    private Set<BasicBlock> calcLiveInBlocks(DominatorTree domTree, AllocaInst allocaInst, Set<BasicBlock> defBlocks, Set<BasicBlock> useBlocks) {
+        Deque<BasicBlock> worklist = new ArrayDeque<>();
+        for (BasicBlock block : useBlocks) {
+            if (!defBlocks.contains(block)) {
+                worklist.push(block);
+                continue;
+            }
+            for (Instruction inst : block) {
+                if (inst instanceof StoreInst storeInst && storeInst.getOperand(1) == allocaInst)
+                    break;
+                if (inst instanceof LoadInst loadInst && loadInst.getOperand(0) == allocaInst) {
+                    worklist.push(block);
+                    break;
+                }
+            }
+        }
+        Set<BasicBlock> liveInBlocks = new HashSet<>();
+        while (!worklist.isEmpty()) {
+            BasicBlock block = worklist.pop();
+            if (!liveInBlocks.add(block))
+                continue;
+            for (BasicBlock pred : domTree.getPreds(block))
+                if (!defBlocks.contains(pred))
+                    worklist.push(pred);
+        }
+        return liveInBlocks;
+    }
+
+    private void rename(Function func, DominatorTree domTree, List<AllocaInst> allocas, Map<PhiInst, AllocaInst> phiToAllocaMap) {
+        Set<AllocaInst> allocaSet = new HashSet<>(allocas);
+        Map<AllocaInst, Value> initValues = new HashMap<>();
+        for (AllocaInst allocaInst : allocas)
+            initValues.put(allocaInst, makeUndef(allocaInst.getType().baseType()));
+        Deque<Map.Entry<BasicBlock, Map<AllocaInst, Value>>> worklist = new ArrayDeque<>();
+        worklist.push(Map.entry(func.getFirst(), initValues));
+        while (!worklist.isEmpty()) {
+            Map.Entry<BasicBlock, Map<AllocaInst, Value>> entry = worklist.pop();
+            BasicBlock block = entry.getKey();
+            Map<AllocaInst, Value> curValues = entry.getValue();
+            for (int i = 0; i < block.size(); i++) {
+                switch (block.get(i)) {
+                    case PhiInst phiInst when phiToAllocaMap.containsKey(phiInst) ->
+                            curValues.put(phiToAllocaMap.get(phiInst), phiInst);
+                    case LoadInst loadInst when loadInst.getOperand(0) instanceof AllocaInst allocaInst && allocaSet.contains(allocaInst) -> {
+                        loadInst.replaceAllUseAs(getCurValue(curValues, allocaInst));
+                        block.remove(i--);
+                        loadInst.clear();
+                    }
+                    case StoreInst storeInst when storeInst.getOperand(1) instanceof AllocaInst allocaInst && allocaSet.contains(allocaInst) -> {
+                        curValues.put(allocaInst, storeInst.getOperand(0));
+                        block.remove(i--);
+                        storeInst.clear();
+                    }
+                    default -> {
+                    }
+                }
+            }
+            for (BasicBlock succ : block.getSuccessors()) {
+                for (Instruction inst : succ) {
+                    if (!(inst instanceof PhiInst phiInst))
+                        break;
+                    AllocaInst allocaInst = phiToAllocaMap.get(phiInst);
+                    if (allocaInst != null)
+                        phiInst.add(block, getCurValue(curValues, allocaInst));
+                }
+            }
+            for (BasicBlock child : domTree.getChildren(block))
+                worklist.push(Map.entry(child, new HashMap<>(curValues)));
+        }
+    }
+
+    private Value getCurValue(Map<AllocaInst, Value> curValues, AllocaInst allocaInst) {
+        Value value = curValues.get(allocaInst);
+        if (value == null)
+            throw new IllegalStateException("Undefined value: " + allocaInst);
+        return value;
+    }
+
+    private void removeTrivialPhis(Set<PhiInst> phis) {
+        Deque<PhiInst> worklist = new ArrayDeque<>(phis);
+        Set<PhiInst> removed = new HashSet<>();
+        while (!worklist.isEmpty()) {
+            PhiInst phiInst = worklist.pop();
+            if (removed.contains(phiInst))
+                continue;
+            Value sameValue = null;
+            boolean isTrivial = true;
+            for (int i = 0; i < phiInst.size(); i += 2) {
+                Value value = phiInst.getOperand(i);
+                if (value == phiInst || value == sameValue)
+                    continue;
+                if (sameValue != null && !(value instanceof ConstantNumber number && number.equals(sameValue) && number.getType() == sameValue.getType())) {
+                    isTrivial = false;
+                    break;
+                }
+                sameValue = value;
+            }
+            if (!isTrivial || sameValue == null)
+                continue;
+            for (Use use : phiInst.getUses())
+                if (use.getUser() instanceof PhiInst userPhi && userPhi != phiInst)
+                    worklist.push(userPhi);
+            phiInst.replaceAllUseAs(sameValue);
+            phiInst.getBlock().remove(phiInst);
+            phiInst.clear();
+            removed.add(phiInst);
+        }
+    }
+
+    private Value makeUndef(Type type) {
+        if (type == BasicType.I32)
+            return new ConstantNumber(0);
+        if (type == BasicType.FLOAT)
+            return new ConstantNumber(0.0f);
+        if (type instanceof PointerType)
+            return null;
+        throw new IllegalStateException("Unexpected value: " + type);
+    }
+}
@@ -0,0 +1,182 @@
+package compile.opt;
+
+import compile.llvm.Argument;
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.GlobalVariable;
+import compile.llvm.Module;
+import compile.llvm.contant.ConstantNumber;
+import compile.llvm.contant.ConstantZero;
+import compile.llvm.ir.*;
+import compile.llvm.type.ArrayType;
+import compile.llvm.type.BasicType;
+import compile.llvm.type.Type;
+import compile.llvm.value.Value;
+import compile.opt.analysis.AnalysisManager;
+import compile.opt.analysis.SideEffectInfo;
+
+import java.util.*;
+
+public class Memoization implements ModulePass {
+    private static final int TABLE_SIZE = 1024;
+    private static final int HASH_MULTIPLIER = 31;
+    private final AnalysisManager analysisManager;
+    private int memoizedNum;
+
+    public Memoization(AnalysisManager analysisManager) {
+        this.analysisManager = analysisManager;
+    }
+
+    @Override
+    public String getName() {
+        return "memoize";
+    }
+
+    @Override
+    public String getStatistics() {
+        return String.format("memoized %d functions", memoizedNum);
+    }
+
+    @Override
+    public boolean run(Module module) {
+        Set<Function> pureFuncs = findPureFuncs(module);
+        boolean changed = false;
+        for (Function func : pureFuncs) {
+            if (!isSelfRecursive(func))
+                continue;
+            memoize(module, func);
+            memoizedNum++;
+            changed = true;
+        }
+        return changed;
+    }
+
+    private Set<Function> findPureFuncs(Module module) {
+        Map<Function, Set<Function>> calleeMap = new HashMap<>();
+        for (Function func : module.getFunctions()) {
+            Set<Function> callees = new HashSet<>();
+            if (isLocallyPure(func, callees))
+                calleeMap.put(func, callees);
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            Iterator<Map.Entry<Function, Set<Function>>> iterator = calleeMap.entrySet().iterator();
+            while (iterator.hasNext()) {
+                if (!calleeMap.keySet().containsAll(iterator.next().getValue())) {
+                    iterator.remove();
+                    changed = true;
+                }
+            }
+        }
+        return new LinkedHashSet<>(calleeMap.keySet());
+    }
+
+    private boolean isLocallyPure(Function func, Set<Function> callees) {
+        if (func.isDeclare() || func.getType() == BasicType.VOID)
+            return false;
+        for (Argument arg : func.getArgs())
+            if (arg.getType() != BasicType.I32)
+                return false;
+        for (BasicBlock block : func) {
+            for (Instruction inst : block) {
+                switch (inst) {
+                    case LoadInst loadInst -> {
+                        Value base = SideEffectInfo.getBasePointer(loadInst.getOperand(0));
+                        if (!(base instanceof AllocaInst) && !(base instanceof GlobalVariable global && global.isConst()))
+                            return false;
+                    }
+                    case StoreInst storeInst -> {
+                        if (!(SideEffectInfo.getBasePointer(storeInst.getOperand(1)) instanceof AllocaInst))
+                            return false;
+                    }
+                    case CallInst callInst -> callees.add(callInst.getOperand(0));
+                    default -> {
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean isSelfRecursive(Function func) {
+        for (BasicBlock block : func)
+            for (Instruction inst : block)
+                if (inst instanceof CallInst callInst && callInst.getOperand(0) == func)
+                    return true;
+        return false;
+    }
+
+    private void memoize(Module module, Function func) {
+        List<GlobalVariable> keyTables = new ArrayList<>();
+        for (int i = 0; i < func.getArgs().size(); i++)
+            keyTables.add(createTable(module, String.format("__memo_%s_key%d", func.getRawName(), i), BasicType.I32));
+        GlobalVariable valueTable = createTable(module, String.format("__memo_%s_value", func.getRawName()), func.getType());
+        GlobalVariable validTable = createTable(module, String.format("__memo_%s_valid", func.getRawName()), BasicType.I32);
+        BasicBlock entryBlock = func.getFirst();
+        int index = 0;
+        while (entryBlock.get(index) instanceof AllocaInst)
+            index++;
+        BasicBlock bodyBlock = CFGUtils.splitBlock(entryBlock, index);
+        List<Argument> args = func.getArgs();
+        Value hash = args.isEmpty() ? new ConstantNumber(0) : args.getFirst();
+        for (int i = 1; i < args.size(); i++) {
+            BinaryOperator mulInst = new BinaryOperator(entryBlock, BinaryOperator.Op.MUL, hash, new ConstantNumber(HASH_MULTIPLIER));
+            BinaryOperator addInst = new BinaryOperator(entryBlock, BinaryOperator.Op.ADD, mulInst, args.get(i));
+            entryBlock.add(mulInst);
+            entryBlock.add(addInst);
+            hash = addInst;
+        }
+        BinaryOperator remInst = new BinaryOperator(entryBlock, BinaryOperator.Op.SREM, hash, new ConstantNumber(TABLE_SIZE));
+        BinaryOperator slot = new BinaryOperator(entryBlock, BinaryOperator.Op.ADD, remInst, new ConstantNumber(TABLE_SIZE));
+        entryBlock.add(remInst);
+        entryBlock.add(slot);
+        BasicBlock curBlock = entryBlock;
+        BasicBlock nextBlock = new BasicBlock(func);
+        func.insertAfter(curBlock, nextBlock);
+        LoadInst validInst = loadSlot(curBlock, validTable, slot);
+        ICmpInst cmpInst = new ICmpInst(curBlock, CmpInst.Cond.NE, validInst, new ConstantNumber(0));
+        curBlock.add(cmpInst);
+        curBlock.add(new BranchInst(curBlock, cmpInst, nextBlock, bodyBlock));
+        for (int i = 0; i < keyTables.size(); i++) {
+            curBlock = nextBlock;
+            nextBlock = new BasicBlock(func);
+            func.insertAfter(curBlock, nextBlock);
+            LoadInst keyInst = loadSlot(curBlock, keyTables.get(i), slot);
+            cmpInst = new ICmpInst(curBlock, CmpInst.Cond.EQ, keyInst, args.get(i));
+            curBlock.add(cmpInst);
+            curBlock.add(new BranchInst(curBlock, cmpInst, nextBlock, bodyBlock));
+        }
+        nextBlock.add(new RetInst(nextBlock, loadSlot(nextBlock, valueTable, slot)));
+        for (BasicBlock block : func) {
+            if (block == nextBlock || !(block.getLast() instanceof RetInst retInst))
+                continue;
+            for (int i = 0; i < keyTables.size(); i++)
+                storeSlot(block, keyTables.get(i), slot, args.get(i));
+            storeSlot(block, valueTable, slot, retInst.getOperand(0));
+            storeSlot(block, validTable, slot, new ConstantNumber(1));
+        }
+        analysisManager.invalidateCFG(func);
+    }
+
+    private GlobalVariable createTable(Module module, String name, Type type) {
+        ArrayType arrayType = new ArrayType(type, TABLE_SIZE * 2);
+        GlobalVariable global = new GlobalVariable(false, arrayType, name, new ConstantZero(arrayType));
+        module.addGlobal(global);
+        return global;
+    }
+
+    private LoadInst loadSlot(BasicBlock block, GlobalVariable table, Value slot) {
+        GetElementPtrInst getElementPtrInst = new GetElementPtrInst(block, table, new ConstantNumber(0), slot);
+        LoadInst loadInst = new LoadInst(block, getElementPtrInst);
+        block.add(getElementPtrInst);
+        block.add(loadInst);
+        return loadInst;
+    }
+
+    private void storeSlot(BasicBlock block, GlobalVariable table, Value slot, Value value) {
+        GetElementPtrInst getElementPtrInst = new GetElementPtrInst(block, table, new ConstantNumber(0), slot);
+        block.add(block.size() - 1, getElementPtrInst);
+        block.add(block.size() - 1, new StoreInst(block, value, getElementPtrInst));
+    }
+}
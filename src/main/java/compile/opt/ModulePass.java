@@ -0,0 +1,7 @@
+package compile.opt;
+
+import compile.llvm.Module;
+
+public interface ModulePass extends Pass {
+    boolean run(Module module);
+}
@@ -0,0 +1,9 @@
+package compile.opt;
+
+public interface Pass {
+    String getName();
+
+    default String getStatistics() {
+        return null;
+    }
+}
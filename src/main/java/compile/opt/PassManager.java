@@ -0,0 +1,159 @@
+package compile.opt;
+
+import compile.codegen.mirgen.MachineFunction;
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.Module;
+import compile.opt.analysis.AnalysisManager;
+import compile.opt.analysis.Loop;
+import compile.opt.analysis.LoopInfo;
+import compile.opt.machine.RedundantJumpElimination;
+import execute.Executor;
+
+import java.util.*;
+
+public class PassManager {
+    private final int optLevel;
+    private final boolean printPassStats;
+    private final int unrollFactor;
+    private final boolean memoize;
+    private final AnalysisManager analysisManager = new AnalysisManager();
+    private final Set<String> disabledPasses = new HashSet<>();
+    private final List<Pass> passes = new ArrayList<>();
+    private final List<MachinePass> machinePasses = new ArrayList<>();
+
+    public PassManager(Executor.OptionPool options) {
+        this.optLevel = options.containsKey("O") ? Integer.parseInt(options.get("O")) : 0;
+        this.printPassStats = options.containsKey("print-pass-stats");
+        this.memoize = options.containsKey("memoize");
+        this.unrollFactor = options.containsKey("unroll-factor") ? Integer.parseInt(options.get("unroll-factor")) : 4;
+        if (options.containsKey("disable-pass") && options.get("disable-pass") != null)
+            disabledPasses.addAll(Arrays.asList(options.get("disable-pass").split(",")));
+        buildPipelines();
+    }
+
+    private void buildPipelines() {
+        if (optLevel >= 1) {
+            addPass(new Mem2Reg(analysisManager));
+            addPass(new TailRecursionElimination(analysisManager));
+            addPass(new IPCP(analysisManager));
+            if (memoize)
+                addPass(new Memoization(analysisManager));
+            addPass(new FunctionInlining(analysisManager));
+            addPass(new GlobalDCE());
+            addPass(new GlobalConstantPromotion());
+            addPass(new GlobalToLocal(analysisManager));
+            addPass(new SCCP(analysisManager));
+            addPass(new InstCombine());
+            addPass(new Reassociate(analysisManager));
+            addPass(new GVN(analysisManager));
+            addPass(new LoadElimination(analysisManager));
+            addPass(new DeadStoreElimination(analysisManager));
+            addPass(new ADCE(analysisManager));
+            addPass(new SimplifyCFG(analysisManager));
+            addPass(new JumpThreading(analysisManager));
+            addPass(new SimplifyCFG(analysisManager));
+            addPass(new IfConversion(analysisManager));
+            addPass(new InstCombine());
+            addPass(new SimplifyCFG(analysisManager));
+            addPass(new GlobalDCE());
+            addMachinePass(new RedundantJumpElimination());
+        }
+        if (optLevel >= 2) {
+            addPass(new LoopSimplify(analysisManager));
+            addPass(new Reassociate(analysisManager));
+            addPass(new LICM(analysisManager));
+            addPass(new LoopUnroll(analysisManager, unrollFactor));
+            addPass(new LoopSimplify(analysisManager));
+            addPass(new LoopStrengthReduce(analysisManager));
+            addPass(new SCCP(analysisManager));
+            addPass(new InstCombine());
+            addPass(new GVN(analysisManager));
+            addPass(new LoadElimination(analysisManager));
+            addPass(new DeadStoreElimination(analysisManager));
+            addPass(new ADCE(analysisManager));
+            addPass(new SimplifyCFG(analysisManager));
+            addPass(new JumpThreading(analysisManager));
+            addPass(new SimplifyCFG(analysisManager));
+            addPass(new IfConversion(analysisManager));
+            addPass(new InstCombine());
+            addPass(new SimplifyCFG(analysisManager));
+        }
+    }
+
+    private void addPass(Pass pass) {
+        if (!disabledPasses.contains(pass.getName()))
+            passes.add(pass);
+    }
+
+    private void addMachinePass(MachinePass pass) {
+        if (!disabledPasses.contains(pass.getName()))
+            machinePasses.add(pass);
+    }
+
+    public boolean run(Module module) {
+        boolean changed = false;
+        for (Pass pass : passes) {
+            switch (pass) {
+                case ModulePass modulePass -> {
+                    if (modulePass.run(module)) {
+                        analysisManager.invalidateModule();
+                        changed = true;
+                    }
+                }
+                case FunctionPass functionPass -> {
+                    for (Function func : module.getFunctions())
+                        if (!func.isDeclare())
+                            changed |= functionPass.run(func);
+                }
+                case LoopPass loopPass -> {
+                    for (Function func : module.getFunctions())
+                        if (!func.isDeclare())
+                            changed |= runLoopPass(loopPass, func);
+                }
+                default -> throw new IllegalStateException("Unexpected value: " + pass);
+            }
+        }
+        if (printPassStats)
+            printStatistics(passes);
+        return changed;
+    }
+
+    private boolean runLoopPass(LoopPass pass, Function func) {
+        boolean changed = false;
+        Set<BasicBlock> visitedHeaders = new HashSet<>();
+        boolean toContinue = true;
+        while (toContinue) {
+            toContinue = false;
+            LoopInfo loopInfo = analysisManager.getLoopInfo(func);
+            for (Loop loop : loopInfo.getLoops()) {
+                if (!visitedHeaders.add(loop.getHeader()))
+                    continue;
+                changed |= pass.run(loop);
+                if (analysisManager.getLoopInfo(func) != loopInfo) {
+                    toContinue = true;
+                    break;
+                }
+            }
+        }
+        return changed;
+    }
+
+    public boolean run(Map<String, MachineFunction> funcs) {
+        boolean changed = false;
+        for (MachinePass pass : machinePasses)
+            for (MachineFunction func : funcs.values())
+                changed |= pass.run(func);
+        if (printPassStats)
+            printStatistics(machinePasses);
+        return changed;
+    }
+
+    private void printStatistics(List<? extends Pass> passes) {
+        for (Pass pass : passes) {
+            String statistics = pass.getStatistics();
+            if (statistics != null)
+                System.err.printf("%s: %s%n", pass.getName(), statistics);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package compile.opt;
+
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.contant.ConstantNumber;
+import compile.llvm.ir.BinaryOperator;
+import compile.llvm.ir.GetElementPtrInst;
+import compile.llvm.ir.Instruction;
+import compile.llvm.type.BasicType;
+import compile.llvm.value.Use;
+import compile.llvm.value.Value;
+import compile.opt.analysis.AnalysisManager;
+import compile.opt.analysis.LoopInfo;
+
+import java.util.*;
+
+public class Reassociate implements FunctionPass {
+    private final AnalysisManager analysisManager;
+    private LoopInfo loopInfo;
+    private int rewrittenNum;
+
+    public Reassociate(AnalysisManager analysisManager) {
+        this.analysisManager = analysisManager;
+    }
+
+    @Override
+    public String getName() {
+        return "reassociate";
+    }
+
+    @Override
+    public String getStatistics() {
+        return String.format("rewrote %d expressions", rewrittenNum);
+    }
+
+    @Override
+    public boolean run(Function func) {
+        loopInfo = analysisManager.getLoopInfo(func);
+        boolean changed = false;
+        for (BasicBlock block : func) {
+            for (int i = 0; i < block.size(); i++) {
+                if (!(block.get(i) instanceof BinaryOperator binaryOperator) || !isRoot(binaryOperator))
+                    continue;
+                int oldSize = block.size();
+                if (rewrite(binaryOperator)) {
+                    i += block.size() - oldSize;
+                    rewrittenNum++;
+                    changed = true;
+                }
+            }
+        }
+        loopInfo = null;
+        return changed;
+    }
+
+    private boolean isReassociable(Value value, BinaryOperator.Op op) {
+        return value instanceof BinaryOperator binaryOperator && binaryOperator.op == op && binaryOperator.getType() == BasicType.I32;
+    }
+
+    private boolean isRoot(BinaryOperator binaryOperator) {
+        if (binaryOperator.op != BinaryOperator.Op.ADD && binaryOperator.op != BinaryOperator.Op.MUL || !isReassociable(binaryOperator, binaryOperator.op))
+            return false;
+        return !isInner(binaryOperator, binaryOperator.getBlock(), binaryOperator.op);
+    }
+
+    private boolean isInner(Value value, BasicBlock block, BinaryOperator.Op op) {
+        if (!isReassociable(value, op) || ((Instruction) value).getBlock() != block || value.getUses().size() != 1)
+            return false;
+        Use use = value.getUses().iterator().next();
+        return isReassociable(use.getUser(), op) && ((Instruction) use.getUser()).getBlock() == block;
+    }
+
+    private void linearize(Value value, BasicBlock block, BinaryOperator.Op op, List<Value> leaves, List<BinaryOperator> nodes) {
+        BinaryOperator binaryOperator = (BinaryOperator) value;
+        nodes.add(binaryOperator);
+        for (int i = 0; i < 2; i++) {
+            Value operand = binaryOperator.getOperand(i);
+            if (isInner(operand, block, op))
+                linearize(operand, block, op, leaves, nodes);
+            else
+                leaves.add(operand);
+        }
+    }
+
+    private boolean rewrite(BinaryOperator root) {
+        BasicBlock block = root.getBlock();
+        BinaryOperator.Op op = root.op;
+        List<Value> leaves = new ArrayList<>();
+        List<BinaryOperator> nodes = new ArrayList<>();
+        linearize(root, block, op, leaves, nodes);
+        ConstantNumber constant = null;
+        List<Value> ranked = new ArrayList<>();
+        for (Value leaf : leaves) {
+            if (leaf instanceof ConstantNumber number)
+                constant = constant == null ? number : op == BinaryOperator.Op.ADD ? constant.add(number) : constant.mul(number);
+            else
+                ranked.add(leaf);
+        }
+        ranked.sort(Comparator.comparingInt(this::getRank));
+        if (constant != null) {
+            if (op == BinaryOperator.Op.MUL && constant.intValue() == 0) {
+                replace(root, nodes, constant);
+                return true;
+            }
+            int identity = op == BinaryOperator.Op.ADD ? 0 : 1;
+            if (constant.intValue() != identity) {
+                int index = 0;
+                while (index < ranked.size() && getRank(ranked.get(index)) == getRank(ranked.getFirst()))
+                    index++;
+                ranked.add(op == BinaryOperator.Op.ADD && isAddress(root) ? ranked.size() : index, constant);
+            }
+        }
+        if (ranked.isEmpty())
+            ranked.add(new ConstantNumber(op == BinaryOperator.Op.ADD ? 0 : 1));
+        if (isCanonical(root, ranked))
+            return false;
+        Value value = ranked.getFirst();
+        for (int i = 1; i < ranked.size(); i++) {
+            BinaryOperator newInst = new BinaryOperator(block, op, value, ranked.get(i));
+            block.add(block.indexOf(root), newInst);
+            value = newInst;
+        }
+        replace(root, nodes, value);
+        return true;
+    }
+
+    private boolean isCanonical(BinaryOperator root, List<Value> ranked) {
+        Value value = root;
+        for (int i = ranked.size() - 1; i > 0; i--) {
+            if (!(value instanceof BinaryOperator binaryOperator) || binaryOperator.op != root.op || !isSameLeaf(binaryOperator.getOperand(1), ranked.get(i)))
+                return false;
+            value = binaryOperator.getOperand(0);
+        }
+        return isSameLeaf(value, ranked.getFirst());
+    }
+
+    private boolean isSameLeaf(Value value1, Value value2) {
+        return value1 == value2 || value1 instanceof ConstantNumber && value1.equals(value2);
+    }
+
+    private boolean isAddress(BinaryOperator root) {
+        for (Use use : root.getUses())
+            if (use.getUser() instanceof GetElementPtrInst)
+                return true;
+        return false;
+    }
+
+    private int getRank(Value value) {
+        if (value instanceof Instruction inst)
+            return loopInfo.getLoopDepth(inst.getBlock()) + 1;
+        return 1;
+    }
+
+    private void replace(BinaryOperator root, List<BinaryOperator> nodes, Value value) {
+        root.replaceAllUseAs(value);
+        for (BinaryOperator node : nodes) {
+            node.getBlock().remove(node);
+            node.clear();
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package compile.opt;
+
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.contant.ConstantNumber;
+import compile.llvm.ir.*;
+import compile.llvm.type.BasicType;
+import compile.llvm.value.Use;
+import compile.llvm.value.Value;
+import compile.opt.analysis.AnalysisManager;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.*;
+
+public class SCCP implements FunctionPass {
+    private final AnalysisManager analysisManager;
+    private final Map<Instruction, ConstantNumber> constants = new HashMap<>();
+    private final Set<Instruction> overdefined = new HashSet<>();
+    private final Set<BasicBlock> executableBlocks = new HashSet<>();
+    private final Set<Pair<BasicBlock, BasicBlock>> executableEdges = new HashSet<>();
+    private final Deque<Pair<BasicBlock, BasicBlock>> edgeWorklist = new ArrayDeque<>();
+    private final Deque<Instruction> instWorklist = new ArrayDeque<>();
+    private int replacedNum;
+    private int foldedNum;
+    private int removedNum;
+
+    public SCCP(AnalysisManager analysisManager) {
+        this.analysisManager = analysisManager;
+    }
+
+    @Override
+    public String getName() {
+        return "sccp";
+    }
+
+    @Override
+    public String getStatistics() {
+        return String.format("replaced %d constants, folded %d branches, removed %d blocks", replacedNum, foldedNum, removedNum);
+    }
+
+    @Override
+    public boolean run(Function func) {
+        constants.clear();
+        overdefined.clear();
+        executableBlocks.clear();
+        executableEdges.clear();
+        executableBlocks.add(func.getFirst());
+        for (Instruction inst : func.getFirst())
+            instWorklist.add(inst);
+        do {
+            solve();
+        } while (resolveUndefinedBranches(func));
+        boolean changed = replaceConstants(func);
+        boolean cfgChanged = foldBranches(func);
+        cfgChanged |= removeDeadBlocks(func);
+        if (!cfgChanged)
+            return changed;
+        removeSinglePhis(func);
+        analysisManager.invalidateCFG(func);
+        return true;
+    }
+
+    private void solve() {
+        while (!edgeWorklist.isEmpty() || !instWorklist.isEmpty()) {
+            while (!edgeWorklist.isEmpty()) {
+                Pair<BasicBlock, BasicBlock> edge = edgeWorklist.pop();
+                BasicBlock block = edge.getRight();
+                boolean isNewBlock = executableBlocks.add(block);
+                for (Instruction inst : block) {
+                    if (!isNewBlock && !(inst instanceof PhiInst))
+                        break;
+                    instWorklist.add(inst);
+                }
+            }
+            while (!instWorklist.isEmpty())
+                visit(instWorklist.pop());
+        }
+    }
+
+    private boolean resolveUndefinedBranches(Function func) {
+        boolean changed = false;
+        for (BasicBlock block : func) {
+            if (!executableBlocks.contains(block))
+                continue;
+            if (block.getLast() instanceof BranchInst branchInst && branchInst.isConditional() && branchInst.getOperand(0) instanceof Instruction cond && isUndefined(cond)) {
+                markOverdefined(cond);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private void visit(Instruction inst) {
+        switch (inst) {
+            case PhiInst phiInst -> visitPhi(phiInst);
+            case BranchInst branchInst -> visitBranch(branchInst);
+            case BinaryOperator binaryOperator -> visitFoldable(binaryOperator);
+            case CmpInst cmpInst -> visitFoldable(cmpInst);
+            case SelectInst selectInst -> visitSelect(selectInst);
+            case ZExtInst zExtInst -> visitFoldable(zExtInst);
+            case SExtInst sExtInst -> visitFoldable(sExtInst);
+            case FPToSIInst fpToSIInst -> visitFoldable(fpToSIInst);
+            case SIToFPInst siToFPInst -> visitFoldable(siToFPInst);
+            default -> {
+                if (inst.getType() != BasicType.VOID)
+                    markOverdefined(inst);
+            }
+        }
+    }
+
+    private void visitPhi(PhiInst phiInst) {
+        BasicBlock block = phiInst.getBlock();
+        ConstantNumber merged = null;
+        for (int i = 0; i < phiInst.size(); i += 2) {
+            BasicBlock pred = phiInst.getOperand(i + 1);
+            if (!executableEdges.contains(Pair.of(pred, block)))
+                continue;
+            Value value = phiInst.getOperand(i);
+            if (isOverdefined(value)) {
+                markOverdefined(phiInst);
+                return;
+            }
+            ConstantNumber number = getConstant(value);
+            if (number == null)
+                continue;
+            if (merged != null && !isSameConstant(merged, number)) {
+                markOverdefined(phiInst);
+                return;
+            }
+            merged = number;
+        }
+        if (merged != null)
+            markConstant(phiInst, merged);
+    }
+
+    private void visitBranch(BranchInst branchInst) {
+        BasicBlock block = branchInst.getBlock();
+        if (!branchInst.isConditional()) {
+            markEdge(block, branchInst.getOperand(0));
+            return;
+        }
+        Value cond = branchInst.getOperand(0);
+        if (isOverdefined(cond)) {
+            markEdge(block, branchInst.getOperand(1));
+            markEdge(block, branchInst.getOperand(2));
+            return;
+        }
+        ConstantNumber number = getConstant(cond);
+        if (number != null)
+            markEdge(block, branchInst.getOperand(number.intValue() != 0 ? 1 : 2));
+    }
+
+    private void visitSelect(SelectInst selectInst) {
+        Value cond = selectInst.getOperand(0);
+        if (isOverdefined(cond)) {
+            Value trueValue = selectInst.getOperand(1);
+            Value falseValue = selectInst.getOperand(2);
+            if (isOverdefined(trueValue) || isOverdefined(falseValue)) {
+                markOverdefined(selectInst);
+                return;
+            }
+            ConstantNumber number1 = getConstant(trueValue);
+            ConstantNumber number2 = getConstant(falseValue);
+            if (number1 != null && number2 != null) {
+                if (isSameConstant(number1, number2))
+                    markConstant(selectInst, number1);
+                else
+                    markOverdefined(selectInst);
+            }
+            return;
+        }
+        ConstantNumber number = getConstant(cond);
+        if (number == null)
+            return;
+        Value value = selectInst.getOperand(number.intValue() != 0 ? 1 : 2);
+        if (isOverdefined(value)) {
+            markOverdefined(selectInst);
+            return;
+        }
+        ConstantNumber result = getConstant(value);
+        if (result != null)
+            markConstant(selectInst, result);
+    }
+
+    private void visitFoldable(Instruction inst) {
+        for (int i = 0; i < inst.size(); i++) {
+            if (isOverdefined(inst.getOperand(i))) {
+                markOverdefined(inst);
+                return;
+            }
+        }
+        for (int i = 0; i < inst.size(); i++)
+            if (getConstant(inst.getOperand(i)) == null)
+                return;
+        ConstantNumber result = fold(inst);
+        if (result == null)
+            markOverdefined(inst);
+        else
+            markConstant(inst, result);
+    }
+
+    private ConstantNumber fold(Instruction inst) {
+        return switch (inst) {
+            case BinaryOperator binaryOperator -> foldBinary(binaryOperator);
+            case ICmpInst iCmpInst -> foldICmp(iCmpInst);
+            case FCmpInst fCmpInst -> foldFCmp(fCmpInst);
+            case ZExtInst zExtInst -> new ConstantNumber(getConstant(zExtInst.getOperand(0)).intValue());
+            case SExtInst sExtInst -> new ConstantNumber(-getConstant(sExtInst.getOperand(0)).intValue());
+            case FPToSIInst fpToSIInst -> {
+                float value = getConstant(fpToSIInst.getOperand(0)).floatValue();
+                yield Float.isNaN(value) ? null : new ConstantNumber((int) value);
+            }
+            case SIToFPInst siToFPInst -> new ConstantNumber((float) getConstant(siToFPInst.getOperand(0)).intValue());
+            default -> throw new IllegalStateException("Unexpected value: " + inst);
+        };
+    }
+
+    private ConstantNumber foldBinary(BinaryOperator binaryOperator) {
+        ConstantNumber number1 = getConstant(binaryOperator.getOperand(0));
+        ConstantNumber number2 = getConstant(binaryOperator.getOperand(1));
+        return switch (binaryOperator.op) {
+            case ADD, FADD -> number1.add(number2);
+            case SUB, FSUB -> number1.sub(number2);
+            case MUL, FMUL -> number1.mul(number2);
+            case SDIV -> number2.intValue() == 0 ? null : number1.div(number2);
+            case FDIV -> number1.div(number2);
+            case SREM -> number2.intValue() == 0 ? null : number1.rem(number2);
+            case XOR -> {
+                int value = number1.intValue() ^ number2.intValue();
+                yield binaryOperator.getType() == BasicType.I1 ? new ConstantNumber(value != 0) : new ConstantNumber(value);
+            }
+        };
+    }
+
+    private ConstantNumber foldICmp(ICmpInst iCmpInst) {
+        int value1 = getConstant(iCmpInst.getOperand(0)).intValue();
+        int value2 = getConstant(iCmpInst.getOperand(1)).intValue();
+        return new ConstantNumber(switch (iCmpInst.getCond()) {
+            case EQ -> value1 == value2;
+            case NE -> value1 != value2;
+            case SGT -> value1 > value2;
+            case SGE -> value1 >= value2;
+            case SLT -> value1 < value2;
+            case SLE -> value1 <= value2;
+            default -> throw new IllegalStateException("Unexpected value: " + iCmpInst.getCond());
+        });
+    }
+
+    private ConstantNumber foldFCmp(FCmpInst fCmpInst) {
+        float value1 = getConstant(fCmpInst.getOperand(0)).floatValue();
+        float value2 = getConstant(fCmpInst.getOperand(1)).floatValue();
+        return new ConstantNumber(switch (fCmpInst.getCond()) {
+            case OEQ -> value1 == value2;
+            case OGT -> value1 > value2;
+            case OGE -> value1 >= value2;
+            case OLT -> value1 < value2;
+            case OLE -> value1 <= value2;
+            case UNE -> !(value1 == value2);
+            default -> throw new IllegalStateException("Unexpected value: " + fCmpInst.getCond());
+        });
+    }
+
+    private boolean isSameConstant(ConstantNumber number1, ConstantNumber number2) {
+        return number1.getType() == number2.getType() && number1.equals(number2);
+    }
+
+    private boolean isOverdefined(Value value) {
+        return switch (value) {
+            case ConstantNumber number -> false;
+            case Instruction inst -> overdefined.contains(inst);
+            default -> true;
+        };
+    }
+
+    private boolean isUndefined(Instruction inst) {
+        return !constants.containsKey(inst) && !overdefined.contains(inst);
+    }
+
+    private ConstantNumber getConstant(Value value) {
+        return switch (value) {
+            case ConstantNumber number -> number;
+            case Instruction inst -> constants.get(inst);
+            default -> null;
+        };
+    }
+
+    private void markConstant(Instruction inst, ConstantNumber number) {
+        if (overdefined.contains(inst))
+            return;
+        ConstantNumber oldNumber = constants.get(inst);
+        if (oldNumber == null) {
+            constants.put(inst, number);
+            pushUsers(inst);
+            return;
+        }
+        if (!isSameConstant(oldNumber, number))
+            markOverdefined(inst);
+    }
+
+    private void markOverdefined(Instruction inst) {
+        if (!overdefined.add(inst))
+            return;
+        constants.remove(inst);
+        pushUsers(inst);
+    }
+
+    private void pushUsers(Instruction inst) {
+        for (Use use : inst.getUses())
+            if (use.getUser() instanceof Instruction user && executableBlocks.contains(user.getBlock()))
+                instWorklist.add(user);
+    }
+
+    private void markEdge(BasicBlock from, BasicBlock to) {
+        Pair<BasicBlock, BasicBlock> edge = Pair.of(from, to);
+        if (executableEdges.add(edge))
+            edgeWorklist.add(edge);
+    }
+
+    private boolean replaceConstants(Function func) {
+        boolean changed = false;
+        for (BasicBlock block : func) {
+            if (!executableBlocks.contains(block))
+                continue;
+            for (int i = 0; i < block.size(); i++) {
+                Instruction inst = block.get(i);
+                ConstantNumber number = constants.get(inst);
+                if (number == null)
+                    continue;
+                inst.replaceAllUseAs(number);
+                block.remove(i--);
+                inst.clear();
+                replacedNum++;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private boolean foldBranches(Function func) {
+        boolean changed = false;
+        for (BasicBlock block : func) {
+            if (!executableBlocks.contains(block) || !(block.getLast() instanceof BranchInst branchInst) || !branchInst.isConditional())
+                continue;
+            BasicBlock ifTrue = branchInst.getOperand(1);
+            BasicBlock ifFalse = branchInst.getOperand(2);
+            boolean isTrueExecutable = executableEdges.contains(Pair.of(block, ifTrue));
+            boolean isFalseExecutable = executableEdges.contains(Pair.of(block, ifFalse));
+            if (isTrueExecutable && isFalseExecutable)
+                continue;
+            BasicBlock dest = isTrueExecutable ? ifTrue : ifFalse;
+            BasicBlock deadDest = isTrueExecutable ? ifFalse : ifTrue;
+            block.remove(branchInst);
+            branchInst.clear();
+            block.add(new BranchInst(block, dest));
+            if (deadDest != dest)
+                CFGUtils.removePhiBlock(deadDest, block);
+            foldedNum++;
+            changed = true;
+        }
+        return changed;
+    }
+
+    private boolean removeDeadBlocks(Function func) {
+        List<BasicBlock> deadBlocks = new ArrayList<>();
+        for (BasicBlock block : func)
+            if (!executableBlocks.contains(block))
+                deadBlocks.add(block);
+        for (BasicBlock block : deadBlocks)
+            CFGUtils.removeBlock(block);
+        removedNum += deadBlocks.size();
+        return !deadBlocks.isEmpty();
+    }
+
+    private void removeSinglePhis(Function func) {
+        for (BasicBlock block : func) {
+            for (int i = 0; i < block.size(); i++) {
+                if (!(block.get(i) instanceof PhiInst phiInst))
+                    break;
+                if (phiInst.size() != 2 || phiInst.getOperand(0) == phiInst)
+                    continue;
+                phiInst.replaceAllUseAs(phiInst.getOperand(0));
+                block.remove(i--);
+                phiInst.clear();
+            }
+        }
+    }
+}
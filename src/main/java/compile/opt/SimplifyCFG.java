@@ -0,0 +1,191 @@
+package compile.opt;
+
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.contant.ConstantNumber;
+import compile.llvm.ir.BranchInst;
+import compile.llvm.ir.Instruction;
+import compile.llvm.ir.PhiInst;
+import compile.llvm.value.Use;
+import compile.llvm.value.Value;
+import compile.opt.analysis.AnalysisManager;
+
+import java.util.*;
+
+public class SimplifyCFG implements FunctionPass {
+    private final AnalysisManager analysisManager;
+    private final Map<BasicBlock, List<BasicBlock>> predMap = new HashMap<>();
+    private int foldedNum;
+    private int removedNum;
+
+    public SimplifyCFG(AnalysisManager analysisManager) {
+        this.analysisManager = analysisManager;
+    }
+
+    @Override
+    public String getName() {
+        return "simplifycfg";
+    }
+
+    @Override
+    public String getStatistics() {
+        return String.format("folded %d branches, removed %d blocks", foldedNum, removedNum);
+    }
+
+    @Override
+    public boolean run(Function func) {
+        boolean changed = false;
+        boolean toContinue = true;
+        while (toContinue) {
+            toContinue = foldBranches(func);
+            toContinue |= removeUnreachableBlocks(func);
+            toContinue |= forwardEmptyBlocks(func);
+            toContinue |= mergeBlocks(func);
+            changed |= toContinue;
+        }
+        predMap.clear();
+        if (changed)
+            analysisManager.invalidateCFG(func);
+        return changed;
+    }
+
+    private void calcPreds(Function func) {
+        predMap.clear();
+        for (BasicBlock block : func)
+            predMap.put(block, new ArrayList<>());
+        for (BasicBlock block : func)
+            for (BasicBlock succ : block.getSuccessors())
+                predMap.get(succ).add(block);
+    }
+
+    private boolean hasPhi(BasicBlock block) {
+        return !block.isEmpty() && block.get(0) instanceof PhiInst;
+    }
+
+    private boolean foldBranches(Function func) {
+        boolean changed = false;
+        for (BasicBlock block : func) {
+            if (!(block.getLast() instanceof BranchInst branchInst) || !branchInst.isConditional())
+                continue;
+            BasicBlock ifTrue = branchInst.getOperand(1);
+            BasicBlock ifFalse = branchInst.getOperand(2);
+            BasicBlock dest;
+            if (ifTrue == ifFalse)
+                dest = ifTrue;
+            else if (branchInst.getOperand(0) instanceof ConstantNumber cond) {
+                dest = cond.intValue() != 0 ? ifTrue : ifFalse;
+                CFGUtils.removePhiBlock(dest == ifTrue ? ifFalse : ifTrue, block);
+            } else
+                continue;
+            block.remove(branchInst);
+            branchInst.clear();
+            block.add(new BranchInst(block, dest));
+            foldedNum++;
+            changed = true;
+        }
+        return changed;
+    }
+
+    private boolean removeUnreachableBlocks(Function func) {
+        analysisManager.invalidateCFG(func);
+        int num = CFGUtils.removeUnreachableBlocks(func, analysisManager.getDomTree(func));
+        analysisManager.invalidateCFG(func);
+        removedNum += num;
+        return num > 0;
+    }
+
+    private boolean forwardEmptyBlocks(Function func) {
+        calcPreds(func);
+        List<BasicBlock> removedBlocks = new ArrayList<>();
+        for (BasicBlock block : func) {
+            if (block == func.getFirst() || !(block.getLast() instanceof BranchInst branchInst) || branchInst.isConditional())
+                continue;
+            BasicBlock succ = branchInst.getOperand(0);
+            if (succ == block || !isForwardable(block, succ))
+                continue;
+            List<BasicBlock> preds = predMap.get(block);
+            List<BasicBlock> succPreds = predMap.get(succ);
+            boolean isForwarded = true;
+            for (BasicBlock pred : new ArrayList<>(preds)) {
+                if (hasPhi(succ) && succPreds.contains(pred)) {
+                    isForwarded = false;
+                    continue;
+                }
+                ((BranchInst) pred.getLast()).replaceBlock(block, succ);
+                for (Instruction inst : succ) {
+                    if (!(inst instanceof PhiInst phiInst))
+                        break;
+                    Value value = phiInst.getValue(block);
+                    if (value instanceof PhiInst blockPhiInst && blockPhiInst.getBlock() == block)
+                        value = blockPhiInst.getValue(pred);
+                    phiInst.add(pred, value);
+                }
+                for (Instruction inst : block) {
+                    if (!(inst instanceof PhiInst phiInst))
+                        break;
+                    phiInst.removeBlock(pred);
+                }
+                preds.remove(pred);
+                if (!succPreds.contains(pred))
+                    succPreds.add(pred);
+            }
+            if (!isForwarded)
+                continue;
+            succPreds.remove(block);
+            removedBlocks.add(block);
+        }
+        for (BasicBlock block : removedBlocks)
+            CFGUtils.removeBlock(block);
+        removedNum += removedBlocks.size();
+        return !removedBlocks.isEmpty();
+    }
+
+    private boolean isForwardable(BasicBlock block, BasicBlock succ) {
+        for (int i = 0; i < block.size() - 1; i++) {
+            if (!(block.get(i) instanceof PhiInst phiInst))
+                return false;
+            for (Use use : phiInst.getUses())
+                if (!(use.getUser() instanceof PhiInst user) || user.getBlock() != succ)
+                    return false;
+        }
+        return true;
+    }
+
+    private boolean mergeBlocks(Function func) {
+        calcPreds(func);
+        List<BasicBlock> removedBlocks = new ArrayList<>();
+        for (BasicBlock block : func) {
+            if (removedBlocks.contains(block))
+                continue;
+            while (block.getLast() instanceof BranchInst branchInst && !branchInst.isConditional()) {
+                BasicBlock succ = branchInst.getOperand(0);
+                if (succ == block || succ == func.getFirst() || predMap.get(succ).size() != 1)
+                    break;
+                block.remove(branchInst);
+                branchInst.clear();
+                while (!succ.isEmpty()) {
+                    Instruction inst = succ.remove(0);
+                    if (inst instanceof PhiInst phiInst) {
+                        phiInst.replaceAllUseAs(phiInst.getValue(block));
+                        phiInst.clear();
+                        continue;
+                    }
+                    block.add(inst);
+                }
+                for (BasicBlock newSucc : block.getSuccessors()) {
+                    for (Instruction inst : newSucc) {
+                        if (!(inst instanceof PhiInst phiInst))
+                            break;
+                        phiInst.replaceBlock(succ, block);
+                    }
+                    predMap.get(newSucc).replaceAll(pred -> pred == succ ? block : pred);
+                }
+                removedBlocks.add(succ);
+            }
+        }
+        for (BasicBlock block : removedBlocks)
+            block.getFunction().remove(block);
+        removedNum += removedBlocks.size();
+        return !removedBlocks.isEmpty();
+    }
+}
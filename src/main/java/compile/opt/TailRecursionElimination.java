@@ -0,0 +1,190 @@
+package compile.opt;
+
+import compile.llvm.Argument;
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.contant.ConstantNumber;
+import compile.llvm.ir.*;
+import compile.llvm.type.BasicType;
+import compile.llvm.value.Use;
+import compile.llvm.value.Value;
+import compile.opt.analysis.AnalysisManager;
+import compile.opt.analysis.SideEffectInfo;
+
+import java.util.*;
+
+public class TailRecursionElimination implements FunctionPass {
+    private final AnalysisManager analysisManager;
+    private int eliminatedNum;
+
+    public TailRecursionElimination(AnalysisManager analysisManager) {
+        this.analysisManager = analysisManager;
+    }
+
+    @Override
+    public String getName() {
+        return "tailcallelim";
+    }
+
+    @Override
+    public String getStatistics() {
+        return String.format("eliminated %d tail calls", eliminatedNum);
+    }
+
+    @Override
+    public boolean run(Function func) {
+        List<TailCall> tailCalls = new ArrayList<>();
+        BinaryOperator.Op accOp = null;
+        for (BasicBlock block : func) {
+            TailCall tailCall = findTailCall(func, block);
+            if (tailCall == null)
+                continue;
+            if (tailCall.accInst() != null) {
+                if (accOp != null && accOp != tailCall.accInst().op)
+                    continue;
+                accOp = tailCall.accInst().op;
+            }
+            tailCalls.add(tailCall);
+        }
+        if (tailCalls.isEmpty() || !hasOtherReturn(func, tailCalls))
+            return false;
+        BasicBlock entryBlock = func.getFirst();
+        int index = 0;
+        while (entryBlock.get(index) instanceof AllocaInst)
+            index++;
+        BasicBlock header = CFGUtils.splitBlock(entryBlock, index);
+        entryBlock.add(new BranchInst(entryBlock, header));
+        List<PhiInst> argPhis = new ArrayList<>();
+        for (Argument arg : func.getArgs()) {
+            PhiInst phiInst = new PhiInst(header, arg.getType());
+            arg.replaceAllUseAs(phiInst);
+            phiInst.add(entryBlock, arg);
+            header.add(argPhis.size(), phiInst);
+            argPhis.add(phiInst);
+        }
+        PhiInst accPhi = null;
+        if (accOp != null) {
+            accPhi = new PhiInst(header, func.getType());
+            accPhi.add(entryBlock, new ConstantNumber(accOp == BinaryOperator.Op.ADD ? 0 : 1));
+            header.add(argPhis.size(), accPhi);
+        }
+        for (TailCall tailCall : tailCalls)
+            eliminate(tailCall, header, argPhis, accPhi);
+        if (accPhi != null)
+            applyAccumulator(func, accOp, accPhi);
+        eliminatedNum += tailCalls.size();
+        analysisManager.invalidateCFG(func);
+        return true;
+    }
+
+    private TailCall findTailCall(Function func, BasicBlock block) {
+        int index = block.size() - 2;
+        if (index < 0)
+            return null;
+        BinaryOperator accInst = null;
+        if (block.get(index) instanceof BinaryOperator binaryOperator) {
+            accInst = binaryOperator;
+            index--;
+        }
+        if (index < 0 || !(block.get(index) instanceof CallInst callInst) || callInst.getOperand(0) != func)
+            return null;
+        for (int i = 1; i < callInst.size(); i++)
+            if (SideEffectInfo.getBasePointer(callInst.getOperand(i)) instanceof AllocaInst)
+                return null;
+        Value retValue = callInst;
+        if (accInst != null) {
+            if (accInst.getType() != BasicType.I32 || (accInst.op != BinaryOperator.Op.ADD && accInst.op != BinaryOperator.Op.MUL))
+                return null;
+            if (accInst.getOperand(0) != callInst == (accInst.getOperand(1) != callInst))
+                return null;
+            if (callInst.getUses().size() != 1)
+                return null;
+            retValue = accInst;
+        }
+        boolean isVoid = func.getType() == BasicType.VOID;
+        if (!isVoid && retValue.getUses().size() != 1)
+            return null;
+        switch (block.getLast()) {
+            case RetInst retInst -> {
+                if (isVoid ? !retInst.isEmpty() : retInst.getOperand(0) != retValue)
+                    return null;
+                return new TailCall(callInst, accInst, null);
+            }
+            case BranchInst branchInst -> {
+                if (branchInst.isConditional())
+                    return null;
+                BasicBlock retBlock = branchInst.getOperand(0);
+                if (isVoid ? retBlock.size() != 1 || !(retBlock.get(0) instanceof RetInst) : !isReturnOf(retBlock, block, retValue))
+                    return null;
+                return new TailCall(callInst, accInst, retBlock);
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    private boolean isReturnOf(BasicBlock retBlock, BasicBlock block, Value retValue) {
+        if (retBlock.size() != 2 || !(retBlock.get(0) instanceof PhiInst phiInst) || !(retBlock.getLast() instanceof RetInst retInst))
+            return false;
+        return retInst.getOperand(0) == phiInst && phiInst.getValue(block) == retValue;
+    }
+
+    private boolean hasOtherReturn(Function func, List<TailCall> tailCalls) {
+        Set<BasicBlock> tailBlocks = new HashSet<>();
+        for (TailCall tailCall : tailCalls)
+            tailBlocks.add(tailCall.callInst().getBlock());
+        for (BasicBlock block : func) {
+            if (!(block.getLast() instanceof RetInst) || tailBlocks.contains(block))
+                continue;
+            for (BasicBlock pred : analysisManager.getDomTree(func).getPreds(block))
+                if (!tailBlocks.contains(pred))
+                    return true;
+            if (block == func.getFirst())
+                return true;
+        }
+        return false;
+    }
+
+    private void eliminate(TailCall tailCall, BasicBlock header, List<PhiInst> argPhis, PhiInst accPhi) {
+        CallInst callInst = tailCall.callInst();
+        BasicBlock block = callInst.getBlock();
+        for (int i = 0; i < argPhis.size(); i++)
+            argPhis.get(i).add(block, callInst.getOperand(i + 1));
+        BinaryOperator accInst = tailCall.accInst();
+        if (accPhi != null) {
+            Value newAcc = accPhi;
+            if (accInst != null) {
+                Value other = accInst.getOperand(accInst.getOperand(0) == callInst ? 1 : 0);
+                newAcc = new BinaryOperator(block, accInst.op, accPhi, other);
+                block.add(block.size() - 1, (Instruction) newAcc);
+            }
+            accPhi.add(block, newAcc);
+        }
+        Instruction terminator = block.getLast();
+        if (tailCall.retBlock() != null)
+            CFGUtils.removePhiBlock(tailCall.retBlock(), block);
+        block.remove(terminator);
+        terminator.clear();
+        block.add(new BranchInst(block, header));
+        if (accInst != null) {
+            block.remove(accInst);
+            accInst.clear();
+        }
+        block.remove(callInst);
+        callInst.clear();
+    }
+
+    private void applyAccumulator(Function func, BinaryOperator.Op accOp, PhiInst accPhi) {
+        for (BasicBlock block : func) {
+            if (!(block.getLast() instanceof RetInst retInst))
+                continue;
+            BinaryOperator binaryOperator = new BinaryOperator(block, accOp, accPhi, retInst.getOperand(0));
+            block.add(block.size() - 1, binaryOperator);
+            retInst.set(0, new Use(retInst, binaryOperator));
+        }
+    }
+
+    private record TailCall(CallInst callInst, BinaryOperator accInst, BasicBlock retBlock) {
+    }
+}
@@ -0,0 +1,261 @@
+package compile.opt.analysis;
+
+import compile.llvm.Argument;
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.GlobalVariable;
+import compile.llvm.contant.ConstantNumber;
+import compile.llvm.ir.*;
+import compile.llvm.type.PointerType;
+import compile.llvm.type.Type;
+import compile.llvm.value.Value;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.*;
+
+public class AliasAnalysis {
+    private final Map<Pair<Value, Value>, AliasResult> aliasCache = new HashMap<>();
+    private final Map<Function, Summary> summaries = new HashMap<>();
+
+    public AliasResult alias(Value pointer1, Value pointer2) {
+        if (pointer1 == pointer2)
+            return AliasResult.MUST_ALIAS;
+        Pair<Value, Value> key = Pair.of(pointer1, pointer2);
+        AliasResult result = aliasCache.get(key);
+        if (result == null) {
+            result = calcAlias(pointer1, pointer2);
+            aliasCache.put(key, result);
+            aliasCache.put(Pair.of(pointer2, pointer1), result);
+        }
+        return result;
+    }
+
+    public boolean mayAlias(Value pointer1, Value pointer2) {
+        return alias(pointer1, pointer2) != AliasResult.NO_ALIAS;
+    }
+
+    public ModRefResult getModRef(Instruction inst, Value pointer) {
+        return switch (inst) {
+            case LoadInst loadInst -> mayAlias(loadInst.getOperand(0), pointer) ? ModRefResult.REF : ModRefResult.NO_MOD_REF;
+            case StoreInst storeInst -> mayAlias(storeInst.getOperand(1), pointer) ? ModRefResult.MOD : ModRefResult.NO_MOD_REF;
+            case CallInst callInst -> getModRef(callInst, pointer);
+            default -> ModRefResult.NO_MOD_REF;
+        };
+    }
+
+    public ModRefResult getModRef(CallInst callInst, Value pointer) {
+        Summary summary = getSummary(callInst.getOperand(0));
+        Value base = SideEffectInfo.getBasePointer(pointer);
+        boolean isMod = isAccessed(callInst, base, summary.isModUnknown, summary.modGlobals, summary.modArgs);
+        boolean isRef = isAccessed(callInst, base, summary.isRefUnknown, summary.refGlobals, summary.refArgs);
+        if (isMod)
+            return isRef ? ModRefResult.MOD_REF : ModRefResult.MOD;
+        return isRef ? ModRefResult.REF : ModRefResult.NO_MOD_REF;
+    }
+
+    public static boolean isIdentifiedObject(Value base) {
+        return base instanceof GlobalVariable || base instanceof AllocaInst;
+    }
+
+    private boolean isAccessed(CallInst callInst, Value base, boolean isUnknown, Set<GlobalVariable> globals, Set<Integer> args) {
+        if (isUnknown)
+            return true;
+        if (base instanceof GlobalVariable global && globals.contains(global))
+            return true;
+        if (!isIdentifiedObject(base) && !globals.isEmpty())
+            return true;
+        for (int index : args)
+            if (mayAliasObject(SideEffectInfo.getBasePointer(callInst.getOperand(index + 1)), base))
+                return true;
+        return false;
+    }
+
+    private AliasResult calcAlias(Value pointer1, Value pointer2) {
+        Value base1 = SideEffectInfo.getBasePointer(pointer1);
+        Value base2 = SideEffectInfo.getBasePointer(pointer2);
+        if (base1 != base2)
+            return mayAliasObject(base1, base2) ? AliasResult.MAY_ALIAS : AliasResult.NO_ALIAS;
+        Offset offset1 = decompose(pointer1);
+        Offset offset2 = decompose(pointer2);
+        if (offset1 == null || offset2 == null || !offset1.terms().equals(offset2.terms()))
+            return AliasResult.MAY_ALIAS;
+        int size1 = getAccessSize(pointer1);
+        int size2 = getAccessSize(pointer2);
+        if (offset1.constant() == offset2.constant() && size1 == size2)
+            return AliasResult.MUST_ALIAS;
+        if (offset1.constant() + size1 <= offset2.constant() || offset2.constant() + size2 <= offset1.constant())
+            return AliasResult.NO_ALIAS;
+        return AliasResult.MAY_ALIAS;
+    }
+
+    private boolean mayAliasObject(Value base1, Value base2) {
+        if (base1 == base2)
+            return true;
+        if (isIdentifiedObject(base1) && isIdentifiedObject(base2))
+            return false;
+        return !(base1 instanceof AllocaInst && base2 instanceof Argument) && !(base1 instanceof Argument && base2 instanceof AllocaInst);
+    }
+
+    private int getAccessSize(Value pointer) {
+        return pointer instanceof GlobalVariable ? pointer.getType().getSize() : pointer.getType().baseType().getSize();
+    }
+
+    private Offset decompose(Value pointer) {
+        Map<Value, Integer> terms = new HashMap<>();
+        int constant = 0;
+        while (true) {
+            switch (pointer) {
+                case GetElementPtrInst getElementPtrInst -> {
+                    Value base = getElementPtrInst.getOperand(0);
+                    Type type = base instanceof GlobalVariable ? base.getType() : base.getType().baseType();
+                    for (int i = 1; i < getElementPtrInst.size(); i++) {
+                        if (i > 1)
+                            type = type.baseType();
+                        Value index = getElementPtrInst.getOperand(i);
+                        while (index instanceof BinaryOperator binaryOperator && binaryOperator.getOperand(1) instanceof ConstantNumber number) {
+                            if (binaryOperator.op == BinaryOperator.Op.ADD)
+                                constant += number.intValue() * type.getSize();
+                            else if (binaryOperator.op == BinaryOperator.Op.SUB)
+                                constant -= number.intValue() * type.getSize();
+                            else
+                                break;
+                            index = binaryOperator.getOperand(0);
+                        }
+                        if (index instanceof ConstantNumber number)
+                            constant += number.intValue() * type.getSize();
+                        else
+                            terms.merge(index, type.getSize(), Integer::sum);
+                    }
+                    pointer = base;
+                }
+                case BitCastInst bitCastInst -> pointer = bitCastInst.getOperand(0);
+                default -> {
+                    terms.values().removeIf(coefficient -> coefficient == 0);
+                    return new Offset(terms, constant);
+                }
+            }
+        }
+    }
+
+    private Summary getSummary(Function func) {
+        if (!summaries.containsKey(func))
+            calcSummaries(func);
+        return summaries.get(func);
+    }
+
+    private void calcSummaries(Function root) {
+        List<Function> funcs = new ArrayList<>();
+        Deque<Function> worklist = new ArrayDeque<>();
+        worklist.push(root);
+        while (!worklist.isEmpty()) {
+            Function func = worklist.pop();
+            if (summaries.containsKey(func))
+                continue;
+            summaries.put(func, new Summary());
+            funcs.add(func);
+            for (BasicBlock block : func)
+                for (Instruction inst : block)
+                    if (inst instanceof CallInst callInst)
+                        worklist.push(callInst.getOperand(0));
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Function func : funcs)
+                changed |= updateSummary(func, summaries.get(func));
+        }
+    }
+
+    private boolean updateSummary(Function func, Summary summary) {
+        boolean changed = false;
+        if (func.isDeclare()) {
+            for (int i = 0; i < func.getArgs().size(); i++) {
+                if (func.getArgs().get(i).getType() instanceof PointerType) {
+                    changed |= summary.refArgs.add(i);
+                    changed |= summary.modArgs.add(i);
+                }
+            }
+            return changed;
+        }
+        for (BasicBlock block : func) {
+            for (Instruction inst : block) {
+                switch (inst) {
+                    case LoadInst loadInst -> changed |= addAccess(func, summary, loadInst.getOperand(0), false);
+                    case StoreInst storeInst -> changed |= addAccess(func, summary, storeInst.getOperand(1), true);
+                    case CallInst callInst -> {
+                        Summary calleeSummary = summaries.get(callInst.<Function>getOperand(0));
+                        changed |= summary.refGlobals.addAll(calleeSummary.refGlobals);
+                        changed |= summary.modGlobals.addAll(calleeSummary.modGlobals);
+                        if (calleeSummary.isRefUnknown && !summary.isRefUnknown) {
+                            summary.isRefUnknown = true;
+                            changed = true;
+                        }
+                        if (calleeSummary.isModUnknown && !summary.isModUnknown) {
+                            summary.isModUnknown = true;
+                            changed = true;
+                        }
+                        for (int index : new ArrayList<>(calleeSummary.refArgs))
+                            changed |= addAccess(func, summary, callInst.getOperand(index + 1), false);
+                        for (int index : new ArrayList<>(calleeSummary.modArgs))
+                            changed |= addAccess(func, summary, callInst.getOperand(index + 1), true);
+                    }
+                    default -> {
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    private boolean addAccess(Function func, Summary summary, Value pointer, boolean isMod) {
+        Value base = SideEffectInfo.getBasePointer(pointer);
+        switch (base) {
+            case AllocaInst allocaInst -> {
+                return false;
+            }
+            case GlobalVariable global -> {
+                return (isMod ? summary.modGlobals : summary.refGlobals).add(global);
+            }
+            case Argument arg -> {
+                return (isMod ? summary.modArgs : summary.refArgs).add(func.getArgs().indexOf(arg));
+            }
+            default -> {
+                if (isMod ? summary.isModUnknown : summary.isRefUnknown)
+                    return false;
+                if (isMod)
+                    summary.isModUnknown = true;
+                else
+                    summary.isRefUnknown = true;
+                return true;
+            }
+        }
+    }
+
+    public enum AliasResult {
+        NO_ALIAS, MAY_ALIAS, MUST_ALIAS
+    }
+
+    public enum ModRefResult {
+        NO_MOD_REF, REF, MOD, MOD_REF;
+
+        public boolean isMod() {
+            return this == MOD || this == MOD_REF;
+        }
+
+        public boolean isRef() {
+            return this == REF || this == MOD_REF;
+        }
+    }
+
+    private record Offset(Map<Value, Integer> terms, int constant) {
+    }
+
+    private static class Summary {
+        private final Set<GlobalVariable> refGlobals = new HashSet<>();
+        private final Set<GlobalVariable> modGlobals = new HashSet<>();
+        private final Set<Integer> refArgs = new HashSet<>();
+        private final Set<Integer> modArgs = new HashSet<>();
+        private boolean isRefUnknown;
+        private boolean isModUnknown;
+    }
+}
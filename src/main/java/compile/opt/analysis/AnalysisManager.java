@@ -0,0 +1,49 @@
+package compile.opt.analysis;
+
+import compile.llvm.Function;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class AnalysisManager {
+    private final Map<Function, DominatorTree> domTrees = new HashMap<>();
+    private final Map<Function, PostDominatorTree> postDomTrees = new HashMap<>();
+    private final Map<Function, LoopInfo> loopInfos = new HashMap<>();
+    private SideEffectInfo sideEffectInfo;
+    private AliasAnalysis aliasAnalysis;
+
+    public DominatorTree getDomTree(Function func) {
+        return domTrees.computeIfAbsent(func, DominatorTree::new);
+    }
+
+    public PostDominatorTree getPostDomTree(Function func) {
+        return postDomTrees.computeIfAbsent(func, PostDominatorTree::new);
+    }
+
+    public LoopInfo getLoopInfo(Function func) {
+        return loopInfos.computeIfAbsent(func, key -> new LoopInfo(getDomTree(key)));
+    }
+
+    public SideEffectInfo getSideEffectInfo() {
+        if (sideEffectInfo == null)
+            sideEffectInfo = new SideEffectInfo();
+        return sideEffectInfo;
+    }
+
+    public AliasAnalysis getAliasAnalysis() {
+        if (aliasAnalysis == null)
+            aliasAnalysis = new AliasAnalysis();
+        return aliasAnalysis;
+    }
+
+    public void invalidateModule() {
+        sideEffectInfo = null;
+        aliasAnalysis = null;
+    }
+
+    public void invalidateCFG(Function func) {
+        domTrees.remove(func);
+        postDomTrees.remove(func);
+        loopInfos.remove(func);
+    }
+}
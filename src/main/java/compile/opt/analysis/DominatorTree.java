@@ -0,0 +1,192 @@
+package compile.opt.analysis;
+
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+
+import java.util.*;
+
+public class DominatorTree {
+    protected final Function func;
+    private boolean isProcessed = false;
+    private final List<BasicBlock> rpo = new ArrayList<>();
+    private final Map<BasicBlock, Integer> rpoIndexes = new HashMap<>();
+    private final Map<BasicBlock, List<BasicBlock>> predMap = new HashMap<>();
+    private final Map<BasicBlock, BasicBlock> idomMap = new HashMap<>();
+    private final Map<BasicBlock, List<BasicBlock>> childrenMap = new HashMap<>();
+    private final Map<BasicBlock, Integer> preOrders = new HashMap<>();
+    private final Map<BasicBlock, Integer> postOrders = new HashMap<>();
+    private final Map<BasicBlock, Set<BasicBlock>> frontierMap = new HashMap<>();
+
+    public DominatorTree(Function func) {
+        this.func = func;
+    }
+
+    protected BasicBlock getRoot() {
+        return func.getFirst();
+    }
+
+    protected List<BasicBlock> getSuccessors(BasicBlock block) {
+        return block.getSuccessors();
+    }
+
+    protected void checkIfIsProcessed() {
+        if (isProcessed)
+            return;
+        isProcessed = true;
+        calcRPO();
+        calcPreds();
+        calcIdoms();
+        calcTreeOrders();
+        calcFrontiers();
+    }
+
+    private void calcRPO() {
+        Set<BasicBlock> visited = new HashSet<>();
+        List<BasicBlock> postOrder = new ArrayList<>();
+        Deque<Iterator<BasicBlock>> iterStack = new ArrayDeque<>();
+        Deque<BasicBlock> blockStack = new ArrayDeque<>();
+        BasicBlock root = getRoot();
+        visited.add(root);
+        blockStack.push(root);
+        iterStack.push(getSuccessors(root).iterator());
+        while (!iterStack.isEmpty()) {
+            Iterator<BasicBlock> iterator = iterStack.peek();
+            if (iterator.hasNext()) {
+                BasicBlock succ = iterator.next();
+                if (visited.add(succ)) {
+                    blockStack.push(succ);
+                    iterStack.push(getSuccessors(succ).iterator());
+                }
+                continue;
+            }
+            iterStack.pop();
+            postOrder.add(blockStack.pop());
+        }
+        rpo.addAll(postOrder.reversed());
+        for (int i = 0; i < rpo.size(); i++)
+            rpoIndexes.put(rpo.get(i), i);
+    }
+
+    private void calcPreds() {
+        for (BasicBlock block : rpo)
+            predMap.put(block, new ArrayList<>());
+        for (BasicBlock block : rpo)
+            for (BasicBlock succ : getSuccessors(block))
+                predMap.get(succ).add(block);
+    }
+
+    private void calcIdoms() {
+        BasicBlock entry = rpo.getFirst();
+        idomMap.put(entry, entry);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < rpo.size(); i++) {
+                BasicBlock block = rpo.get(i);
+                BasicBlock newIdom = null;
+                for (BasicBlock pred : predMap.get(block)) {
+                    if (!idomMap.containsKey(pred))
+                        continue;
+                    newIdom = newIdom == null ? pred : intersect(pred, newIdom);
+                }
+                if (idomMap.get(block) != newIdom) {
+                    idomMap.put(block, newIdom);
+                    changed = true;
+                }
+            }
+        }
+        for (BasicBlock block : rpo)
+            childrenMap.put(block, new ArrayList<>());
+        for (int i = 1; i < rpo.size(); i++)
+            childrenMap.get(idomMap.get(rpo.get(i))).add(rpo.get(i));
+    }
+
+    private BasicBlock intersect(BasicBlock block1, BasicBlock block2) {
+        while (block1 != block2) {
+            while (rpoIndexes.get(block1) > rpoIndexes.get(block2))
+                block1 = idomMap.get(block1);
+            while (rpoIndexes.get(block2) > rpoIndexes.get(block1))
+                block2 = idomMap.get(block2);
+        }
+        return block1;
+    }
+
+    private void calcTreeOrders() {
+        int counter = 0;
+        Deque<Iterator<BasicBlock>> iterStack = new ArrayDeque<>();
+        Deque<BasicBlock> blockStack = new ArrayDeque<>();
+        BasicBlock entry = rpo.getFirst();
+        preOrders.put(entry, counter++);
+        blockStack.push(entry);
+        iterStack.push(childrenMap.get(entry).iterator());
+        while (!iterStack.isEmpty()) {
+            Iterator<BasicBlock> iterator = iterStack.peek();
+            if (iterator.hasNext()) {
+                BasicBlock child = iterator.next();
+                preOrders.put(child, counter++);
+                blockStack.push(child);
+                iterStack.push(childrenMap.get(child).iterator());
+                continue;
+            }
+            iterStack.pop();
+            postOrders.put(blockStack.pop(), counter++);
+        }
+    }
+
+    private void calcFrontiers() {
+        for (BasicBlock block : rpo)
+            frontierMap.put(block, new LinkedHashSet<>());
+        for (BasicBlock block : rpo) {
+            List<BasicBlock> preds = predMap.get(block);
+            if (preds.size() < 2)
+                continue;
+            BasicBlock idom = idomMap.get(block);
+            for (BasicBlock pred : preds) {
+                BasicBlock runner = pred;
+                while (runner != idom) {
+                    frontierMap.get(runner).add(block);
+                    runner = idomMap.get(runner);
+                }
+            }
+        }
+    }
+
+    public List<BasicBlock> getReversePostOrder() {
+        checkIfIsProcessed();
+        return rpo;
+    }
+
+    public boolean isReachable(BasicBlock block) {
+        checkIfIsProcessed();
+        return rpoIndexes.containsKey(block);
+    }
+
+    public List<BasicBlock> getPreds(BasicBlock block) {
+        checkIfIsProcessed();
+        return predMap.get(block);
+    }
+
+    public BasicBlock getIdom(BasicBlock block) {
+        checkIfIsProcessed();
+        if (block == getRoot())
+            return null;
+        return idomMap.get(block);
+    }
+
+    public List<BasicBlock> getChildren(BasicBlock block) {
+        checkIfIsProcessed();
+        return childrenMap.get(block);
+    }
+
+    public Set<BasicBlock> getFrontier(BasicBlock block) {
+        checkIfIsProcessed();
+        return frontierMap.get(block);
+    }
+
+    public boolean dominates(BasicBlock block1, BasicBlock block2) {
+        checkIfIsProcessed();
+        if (!isReachable(block1) || !isReachable(block2))
+            return false;
+        return preOrders.get(block1) <= preOrders.get(block2) && postOrders.get(block2) <= postOrders.get(block1);
+    }
+}
@@ -0,0 +1,114 @@
+package compile.opt.analysis;
+
+import compile.llvm.BasicBlock;
+
+import java.util.*;
+
+public class Loop {
+    private final BasicBlock header;
+    private final Set<BasicBlock> blocks = new LinkedHashSet<>();
+    private final List<BasicBlock> latches = new ArrayList<>();
+    private final List<BasicBlock> enteringBlocks = new ArrayList<>();
+    private final List<Loop> subLoops = new ArrayList<>();
+    private Loop parent;
+
+    public Loop(BasicBlock header) {
+        this.header = header;
+        this.blocks.add(header);
+    }
+
+    public BasicBlock getHeader() {
+        return header;
+    }
+
+    public Set<BasicBlock> getBlocks() {
+        return blocks;
+    }
+
+    public boolean contains(BasicBlock block) {
+        return blocks.contains(block);
+    }
+
+    public boolean contains(Loop loop) {
+        return blocks.contains(loop.header);
+    }
+
+    void addBlock(BasicBlock block) {
+        blocks.add(block);
+    }
+
+    public List<BasicBlock> getLatches() {
+        return latches;
+    }
+
+    void addLatch(BasicBlock latch) {
+        latches.add(latch);
+    }
+
+    public BasicBlock getLatch() {
+        return latches.size() == 1 ? latches.getFirst() : null;
+    }
+
+    public List<BasicBlock> getEnteringBlocks() {
+        return enteringBlocks;
+    }
+
+    void addEnteringBlock(BasicBlock block) {
+        enteringBlocks.add(block);
+    }
+
+    public BasicBlock getPreheader() {
+        if (enteringBlocks.size() != 1)
+            return null;
+        BasicBlock block = enteringBlocks.getFirst();
+        List<BasicBlock> succs = block.getSuccessors();
+        return succs.size() == 1 ? block : null;
+    }
+
+    public List<BasicBlock> getExitingBlocks() {
+        List<BasicBlock> exitingBlocks = new ArrayList<>();
+        for (BasicBlock block : blocks) {
+            for (BasicBlock succ : block.getSuccessors()) {
+                if (!blocks.contains(succ)) {
+                    exitingBlocks.add(block);
+                    break;
+                }
+            }
+        }
+        return exitingBlocks;
+    }
+
+    public List<BasicBlock> getExitBlocks() {
+        Set<BasicBlock> exitBlocks = new LinkedHashSet<>();
+        for (BasicBlock block : blocks)
+            for (BasicBlock succ : block.getSuccessors())
+                if (!blocks.contains(succ))
+                    exitBlocks.add(succ);
+        return new ArrayList<>(exitBlocks);
+    }
+
+    public Loop getParent() {
+        return parent;
+    }
+
+    void setParent(Loop parent) {
+        this.parent = parent;
+        parent.subLoops.add(this);
+    }
+
+    public List<Loop> getSubLoops() {
+        return subLoops;
+    }
+
+    public int getDepth() {
+        int depth = 1;
+        for (Loop loop = parent; loop != null; loop = loop.parent)
+            depth++;
+        return depth;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("loop %s depth %d: %s", header, getDepth(), blocks);
+    }
+}
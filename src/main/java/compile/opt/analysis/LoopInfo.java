@@ -0,0 +1,91 @@
+package compile.opt.analysis;
+
+import compile.llvm.BasicBlock;
+
+import java.util.*;
+
+public class LoopInfo {
+    private final DominatorTree domTree;
+    private boolean isProcessed = false;
+    private final List<Loop> loops = new ArrayList<>();
+    private final List<Loop> topLevelLoops = new ArrayList<>();
+    private final Map<BasicBlock, Loop> loopMap = new HashMap<>();
+
+    public LoopInfo(DominatorTree domTree) {
+        this.domTree = domTree;
+    }
+
+    private void checkIfIsProcessed() {
+        if (isProcessed)
+            return;
+        isProcessed = true;
+        findLoops();
+        buildForest();
+    }
+
+    private void findLoops() {
+        for (BasicBlock header : domTree.getReversePostOrder()) {
+            Loop loop = null;
+            for (BasicBlock pred : domTree.getPreds(header)) {
+                if (!domTree.dominates(header, pred))
+                    continue;
+                if (loop == null)
+                    loop = new Loop(header);
+                loop.addLatch(pred);
+            }
+            if (loop == null)
+                continue;
+            Deque<BasicBlock> worklist = new ArrayDeque<>(loop.getLatches());
+            while (!worklist.isEmpty()) {
+                BasicBlock block = worklist.pop();
+                if (loop.contains(block))
+                    continue;
+                loop.addBlock(block);
+                worklist.addAll(domTree.getPreds(block));
+            }
+            for (BasicBlock pred : domTree.getPreds(header))
+                if (!loop.contains(pred))
+                    loop.addEnteringBlock(pred);
+            loops.add(loop);
+        }
+    }
+
+    private void buildForest() {
+        loops.sort(Comparator.comparingInt(loop -> loop.getBlocks().size()));
+        for (int i = 0; i < loops.size(); i++) {
+            Loop loop = loops.get(i);
+            for (int j = i + 1; j < loops.size(); j++) {
+                Loop outerLoop = loops.get(j);
+                if (outerLoop.contains(loop)) {
+                    loop.setParent(outerLoop);
+                    break;
+                }
+            }
+            if (loop.getParent() == null)
+                topLevelLoops.add(loop);
+        }
+        for (Loop loop : loops.reversed())
+            for (BasicBlock block : loop.getBlocks())
+                loopMap.put(block, loop);
+    }
+
+    public List<Loop> getLoops() {
+        checkIfIsProcessed();
+        return loops;
+    }
+
+    public List<Loop> getTopLevelLoops() {
+        checkIfIsProcessed();
+        return topLevelLoops;
+    }
+
+    public Loop getLoopFor(BasicBlock block) {
+        checkIfIsProcessed();
+        return loopMap.get(block);
+    }
+
+    public int getLoopDepth(BasicBlock block) {
+        Loop loop = getLoopFor(block);
+        return loop == null ? 0 : loop.getDepth();
+    }
+}
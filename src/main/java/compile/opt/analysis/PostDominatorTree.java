@@ -0,0 +1,57 @@
+package compile.opt.analysis;
+
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PostDominatorTree extends DominatorTree {
+    private final BasicBlock exit;
+    private final Map<BasicBlock, List<BasicBlock>> cfgPredMap = new HashMap<>();
+
+    public PostDominatorTree(Function func) {
+        super(func);
+        this.exit = new BasicBlock(func);
+    }
+
+    @Override
+    protected BasicBlock getRoot() {
+        return exit;
+    }
+
+    @Override
+    protected List<BasicBlock> getSuccessors(BasicBlock block) {
+        if (cfgPredMap.isEmpty())
+            calcCFGPreds();
+        return cfgPredMap.get(block);
+    }
+
+    private void calcCFGPreds() {
+        List<BasicBlock> exits = new ArrayList<>();
+        for (BasicBlock block : func)
+            cfgPredMap.put(block, new ArrayList<>());
+        for (BasicBlock block : func) {
+            List<BasicBlock> succs = block.getSuccessors();
+            if (succs.isEmpty())
+                exits.add(block);
+            for (BasicBlock succ : succs)
+                cfgPredMap.get(succ).add(block);
+        }
+        cfgPredMap.put(exit, exits);
+    }
+
+    @Override
+    public List<BasicBlock> getReversePostOrder() {
+        List<BasicBlock> rpo = super.getReversePostOrder();
+        return rpo.subList(1, rpo.size());
+    }
+
+    @Override
+    public BasicBlock getIdom(BasicBlock block) {
+        BasicBlock idom = super.getIdom(block);
+        return idom == exit ? null : idom;
+    }
+}
@@ -0,0 +1,112 @@
+package compile.opt.analysis;
+
+import compile.llvm.BasicBlock;
+import compile.llvm.contant.ConstantNumber;
+import compile.llvm.ir.BinaryOperator;
+import compile.llvm.ir.Instruction;
+import compile.llvm.ir.PhiInst;
+import compile.llvm.type.BasicType;
+import compile.llvm.value.Value;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class ScalarEvolution {
+    private final Loop loop;
+    private boolean isProcessed = false;
+    private final Map<PhiInst, Integer> steps = new HashMap<>();
+
+    public ScalarEvolution(Loop loop) {
+        this.loop = loop;
+    }
+
+    private void checkIfIsProcessed() {
+        if (isProcessed)
+            return;
+        isProcessed = true;
+        BasicBlock latch = loop.getLatch();
+        if (latch == null)
+            return;
+        for (Instruction inst : loop.getHeader()) {
+            if (!(inst instanceof PhiInst phiInst))
+                break;
+            if (phiInst.getType() != BasicType.I32)
+                continue;
+            Integer step = calcStep(phiInst, phiInst.getValue(latch));
+            if (step != null && step != 0)
+                steps.put(phiInst, step);
+        }
+    }
+
+    private Integer calcStep(PhiInst phiInst, Value value) {
+        int step = 0;
+        while (value != phiInst) {
+            if (!(value instanceof BinaryOperator binaryOperator) || !loop.contains(binaryOperator.getBlock()))
+                return null;
+            switch (binaryOperator.op) {
+                case ADD -> {
+                    if (binaryOperator.getOperand(1) instanceof ConstantNumber number) {
+                        step += number.intValue();
+                        value = binaryOperator.getOperand(0);
+                    } else if (binaryOperator.getOperand(0) instanceof ConstantNumber number) {
+                        step += number.intValue();
+                        value = binaryOperator.getOperand(1);
+                    } else
+                        return null;
+                }
+                case SUB -> {
+                    if (!(binaryOperator.getOperand(1) instanceof ConstantNumber number))
+                        return null;
+                    step -= number.intValue();
+                    value = binaryOperator.getOperand(0);
+                }
+                default -> {
+                    return null;
+                }
+            }
+        }
+        return step;
+    }
+
+    public Map<PhiInst, Integer> getInductionVars() {
+        checkIfIsProcessed();
+        return steps;
+    }
+
+    public Integer getStep(PhiInst phiInst) {
+        checkIfIsProcessed();
+        return steps.get(phiInst);
+    }
+
+    public boolean isInvariant(Value value) {
+        return !(value instanceof Instruction inst) || !loop.contains(inst.getBlock());
+    }
+
+    public Integer getStride(Value value) {
+        checkIfIsProcessed();
+        if (isInvariant(value))
+            return 0;
+        return switch (value) {
+            case PhiInst phiInst -> steps.get(phiInst);
+            case BinaryOperator binaryOperator -> {
+                Integer stride1 = getStride(binaryOperator.getOperand(0));
+                Integer stride2 = getStride(binaryOperator.getOperand(1));
+                if (stride1 == null || stride2 == null)
+                    yield null;
+                yield switch (binaryOperator.op) {
+                    case ADD -> stride1 + stride2;
+                    case SUB -> stride1 - stride2;
+                    case MUL -> {
+                        if (stride2 == 0 && binaryOperator.getOperand(1) instanceof ConstantNumber number)
+                            yield stride1 * number.intValue();
+                        if (stride1 == 0 && binaryOperator.getOperand(0) instanceof ConstantNumber number)
+                            yield stride2 * number.intValue();
+                        yield null;
+                    }
+                    default -> null;
+                };
+            }
+            default -> null;
+        };
+    }
+}
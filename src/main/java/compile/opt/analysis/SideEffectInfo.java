@@ -0,0 +1,121 @@
+package compile.opt.analysis;
+
+import compile.llvm.BasicBlock;
+import compile.llvm.Function;
+import compile.llvm.GlobalVariable;
+import compile.llvm.contant.ConstantNumber;
+import compile.llvm.ir.*;
+import compile.llvm.type.Type;
+import compile.llvm.value.Value;
+
+import java.util.*;
+
+public class SideEffectInfo {
+    private final Map<Function, Boolean> sideEffects = new HashMap<>();
+
+    public boolean hasSideEffect(Function func) {
+        if (!sideEffects.containsKey(func))
+            calcSideEffects(func);
+        return sideEffects.get(func);
+    }
+
+    public boolean hasSideEffect(Instruction inst) {
+        return switch (inst) {
+            case StoreInst storeInst -> true;
+            case CallInst callInst -> hasSideEffect((Function) callInst.getOperand(0));
+            case RetInst retInst -> true;
+            default -> false;
+        };
+    }
+
+    private void calcSideEffects(Function root) {
+        Map<Function, Set<Function>> calleeMap = new HashMap<>();
+        Deque<Function> worklist = new ArrayDeque<>();
+        worklist.push(root);
+        while (!worklist.isEmpty()) {
+            Function func = worklist.pop();
+            if (calleeMap.containsKey(func) || sideEffects.containsKey(func))
+                continue;
+            Set<Function> callees = new HashSet<>();
+            calleeMap.put(func, callees);
+            if (hasDirectSideEffect(func, callees)) {
+                sideEffects.put(func, true);
+                continue;
+            }
+            worklist.addAll(callees);
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<Function, Set<Function>> entry : calleeMap.entrySet()) {
+                Function func = entry.getKey();
+                if (sideEffects.containsKey(func))
+                    continue;
+                for (Function callee : entry.getValue()) {
+                    if (sideEffects.getOrDefault(callee, false)) {
+                        sideEffects.put(func, true);
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+        for (Function func : calleeMap.keySet())
+            sideEffects.putIfAbsent(func, false);
+    }
+
+    private boolean hasDirectSideEffect(Function func, Set<Function> callees) {
+        if (func.isDeclare())
+            return true;
+        for (BasicBlock block : func) {
+            for (Instruction inst : block) {
+                switch (inst) {
+                    case StoreInst storeInst -> {
+                        if (!(getBasePointer(storeInst.getOperand(1)) instanceof AllocaInst))
+                            return true;
+                    }
+                    case CallInst callInst -> callees.add(callInst.getOperand(0));
+                    default -> {
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    public static Value getBasePointer(Value pointer) {
+        while (true) {
+            switch (pointer) {
+                case GetElementPtrInst getElementPtrInst -> pointer = getElementPtrInst.getOperand(0);
+                case BitCastInst bitCastInst -> pointer = bitCastInst.getOperand(0);
+                default -> {
+                    return pointer;
+                }
+            }
+        }
+    }
+
+    public static Integer getConstantOffset(Value pointer) {
+        int offset = 0;
+        while (true) {
+            switch (pointer) {
+                case GetElementPtrInst getElementPtrInst -> {
+                    Value base = getElementPtrInst.getOperand(0);
+                    Type type = base instanceof GlobalVariable ? base.getType() : base.getType().baseType();
+                    for (int i = 1; i < getElementPtrInst.size(); i++) {
+                        if (!(getElementPtrInst.getOperand(i) instanceof ConstantNumber index))
+                            return null;
+                        if (i > 1)
+                            type = type.baseType();
+                        offset += index.intValue() * type.getSize();
+                    }
+                    pointer = base;
+                }
+                case BitCastInst bitCastInst -> pointer = bitCastInst.getOperand(0);
+                default -> {
+                    return offset;
+                }
+            }
+        }
+    }
+}
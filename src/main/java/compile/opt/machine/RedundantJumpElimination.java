@@ -0,0 +1,34 @@
+package compile.opt.machine;
+
+import compile.codegen.mirgen.MachineFunction;
+import compile.codegen.mirgen.mir.BMIR;
+import compile.codegen.mirgen.mir.LabelMIR;
+import compile.codegen.mirgen.mir.MIR;
+import compile.opt.MachinePass;
+
+import java.util.List;
+
+public class RedundantJumpElimination implements MachinePass {
+    @Override
+    public String getName() {
+        return "redundant-jump-elim";
+    }
+
+    @Override
+    public boolean run(MachineFunction func) {
+        List<MIR> irs = func.getIrs();
+        boolean changed = false;
+        for (int i = 0; i < irs.size(); i++) {
+            if (!(irs.get(i) instanceof BMIR bMIR) || bMIR.hasCond())
+                continue;
+            for (int j = i + 1; j < irs.size() && irs.get(j) instanceof LabelMIR labelMIR; j++) {
+                if (labelMIR.getBlock() == bMIR.block) {
+                    irs.remove(i--);
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        return changed;
+    }
+}
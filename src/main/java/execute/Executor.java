@@ -6,7 +6,9 @@ import preprocess.Preprocessor;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 public class Executor {
     private final OptionPool options = new OptionPool();
@@ -25,16 +27,32 @@ public class Executor {
         options.addOption(Option.builder().longOpt("emit-opt-mir").hasArg().build());
         CommandLine commandLine;
         try {
-            commandLine = DefaultParser.builder().build().parse(options, args);
+            List<String> knownArgs = new ArrayList<>();
+            for (String arg : args) {
+                if (arg.startsWith("--") && !options.hasLongOption(arg.substring(2).split("=", 2)[0]))
+                    setExtraOptions(arg.substring(2));
+                else
+                    knownArgs.add(arg);
+            }
+            commandLine = DefaultParser.builder().build().parse(options, knownArgs.toArray(String[]::new));
             if (commandLine.hasOption("o")) {
                 setTarget(((File) commandLine.getParsedOptionValue("o")).toPath());
             }
+            if (commandLine.hasOption("O")) {
+                this.options.put("O", commandLine.getOptionValue("O"));
+            }
             if (commandLine.hasOption("emit-llvm")) {
                 this.options.put("emit-llvm", commandLine.getOptionValue("emit-llvm"));
             }
             if (commandLine.hasOption("emit-opt-llvm")) {
                 this.options.put("emit-opt-llvm", commandLine.getOptionValue("emit-opt-llvm"));
             }
+            if (commandLine.hasOption("emit-mir")) {
+                this.options.put("emit-mir", commandLine.getOptionValue("emit-mir"));
+            }
+            if (commandLine.hasOption("emit-opt-mir")) {
+                this.options.put("emit-opt-mir", commandLine.getOptionValue("emit-opt-mir"));
+            }
             for (String arg : commandLine.getArgList()) {
                 if (arg.startsWith("--")) {
                     setExtraOptions(arg.substring(2));
@@ -0,0 +1,44 @@
+package compile;
+
+import execute.Executor;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegressionTest {
+    @TempDir
+    private Path tempDir;
+
+    private void compile(String name, String level) throws URISyntaxException {
+        Path source = Path.of(getClass().getResource("/regression/" + name + ".sy").toURI());
+        Path target = tempDir.resolve(name + ".s");
+        new Executor(new String[]{"-S", "-o", target.toString(), source.toString(), "-O" + level, "--emit-opt-llvm=" + tempDir.resolve(name + ".ll")}).execute();
+        assertTrue(Files.exists(target));
+    }
+
+    private String readOptLLVM(String name) throws IOException {
+        return Files.readString(tempDir.resolve(name + ".ll"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "1", "2"})
+    void licmScalarGlobal(String level) throws URISyntaxException {
+        compile("licm_scalar_global", level);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"1", "2"})
+    void dseLoopStore(String level) throws URISyntaxException, IOException {
+        compile("dse_loop_store", level);
+        String llvm = readOptLLVM("dse_loop_store");
+        assertTrue(llvm.contains("store i32 1,"));
+        assertTrue(llvm.contains("store i32 2,"));
+    }
+}